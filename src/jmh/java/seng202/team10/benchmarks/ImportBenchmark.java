@@ -0,0 +1,174 @@
+package seng202.team10.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import seng202.team10.business.CrashManager;
+import seng202.team10.exceptions.DataImportException;
+import seng202.team10.io.CrashCsvImporter;
+import seng202.team10.models.Crash;
+import seng202.team10.repository.DatabaseConfig;
+import seng202.team10.repository.DatabaseManager;
+import seng202.team10.repository.IndexManager;
+import seng202.team10.repository.SqliteQueryBuilder;
+
+/**
+ * Measures how long importing a crash file takes, split into parsing the CSV, writing
+ * parsed crashes to the database with the triggers and with a bulk load, and the whole
+ * import as the application runs it.
+ * Each is run on the 10k crash fixture and on 100k and 1M row files drawn from it.
+ *
+ * <p>Every operation is one full import, so rows per second is the dataset size divided
+ * by the score, and the gc profiler's gc.alloc.rate.norm divided by the dataset size is
+ * the bytes allocated per row.</p>
+ *
+ * <p>Imports are written to a temporary database, so the application's own database
+ * beside the jar is left alone.</p>
+ *
+ * @author Team 10
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+@State(Scope.Benchmark)
+public class ImportBenchmark {
+    private static final long SEED = 202;
+
+    /** Rows in the file to import, where 10k is the fixture itself. */
+    @Param({"10k", "100k", "1M"})
+    public String dataset;
+
+    private File csvFile;
+    private File databaseFile;
+    private List<Crash> crashes;
+    private int chunkSize;
+
+    /**
+     * Opens a temporary database, writes the file to import and parses it once for the
+     * insert benchmark.
+     *
+     * @throws IOException if the files cannot be written
+     * @throws DataImportException if the file cannot be parsed
+     */
+    @Setup(Level.Trial)
+    public void createDataset() throws IOException, DataImportException {
+        databaseFile = File.createTempFile("benchmark", ".db");
+        // Deleted so the database manager creates it with the schema
+        databaseFile.delete();
+        DatabaseManager.initialiseInstanceWithUrl("jdbc:sqlite:" + databaseFile.getPath());
+
+        SyntheticCrashData data = new SyntheticCrashData();
+        csvFile = File.createTempFile("crashes_" + dataset, ".csv");
+        data.write(csvFile, rowCount(data), SEED);
+        crashes = new CrashCsvImporter().crashListFromFile(csvFile);
+        chunkSize = new DatabaseConfig().getImportChunkSize();
+    }
+
+    private int rowCount(SyntheticCrashData data) {
+        return switch (dataset) {
+            case "10k" -> data.getFixtureSize();
+            case "100k" -> 100_000;
+            case "1M" -> 1_000_000;
+            default -> throw new IllegalArgumentException("Unknown dataset " + dataset);
+        };
+    }
+
+    /**
+     * Empties the crashes table so every import writes every row.
+     */
+    @Setup(Level.Invocation)
+    public void clearDatabase() {
+        DatabaseManager.getInstance().resetDb();
+    }
+
+    /**
+     * Parses the file into crashes without writing them.
+     *
+     * @param blackhole consumes each chunk so parsing is not optimised away
+     * @return number of crashes parsed
+     * @throws DataImportException if the file cannot be read
+     */
+    @Benchmark
+    public int parseOnly(Blackhole blackhole) throws DataImportException {
+        return new CrashCsvImporter().readCrashesInParallel(csvFile, chunkSize,
+                CrashManager.parserThreads(), blackhole::consume);
+    }
+
+    /**
+     * Writes already parsed crashes to the database in chunks, with the triggers and
+     * indexes kept up to date row by row.
+     *
+     * @return number of rows written
+     */
+    @Benchmark
+    public int insertOnly() {
+        return writeChunks();
+    }
+
+    /**
+     * Writes the same parsed crashes as {@link #insertOnly()} inside a bulk load, so the
+     * triggers and indexes are dropped while writing and rebuilt once at the end.
+     *
+     * @return number of rows written
+     */
+    @Benchmark
+    public int insertBulkLoad() {
+        IndexManager indexManager = DatabaseManager.getInstance().getIndexManager();
+        indexManager.beginBulkLoad();
+        try {
+            return writeChunks();
+        } finally {
+            indexManager.endBulkLoad();
+        }
+    }
+
+    private int writeChunks() {
+        int written = 0;
+        for (int i = 0; i < crashes.size(); i += chunkSize) {
+            List<Crash> chunk = crashes.subList(i, Math.min(i + chunkSize, crashes.size()));
+            written += SqliteQueryBuilder.create().upsert("crashes").buildSetter(chunk);
+        }
+        return written;
+    }
+
+    /**
+     * Imports the file into an empty database as the import menu does.
+     *
+     * @throws DataImportException if the file cannot be read
+     */
+    @Benchmark
+    public void endToEnd() throws DataImportException {
+        new CrashManager().addAllCrashesFromFile(new CrashCsvImporter(), csvFile);
+    }
+
+    /**
+     * Deletes the imported file and the temporary database.
+     */
+    @TearDown(Level.Trial)
+    public void deleteDataset() {
+        csvFile.delete();
+        DatabaseManager databaseManager = DatabaseManager.getInstance();
+        databaseManager.close();
+        databaseManager.getQuarantineFile().delete();
+        for (String suffix : List.of("", "-wal", "-shm")) {
+            new File(databaseFile.getPath() + suffix).delete();
+        }
+    }
+}
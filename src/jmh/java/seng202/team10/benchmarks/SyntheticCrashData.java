@@ -0,0 +1,103 @@
+package seng202.team10.benchmarks;
+
+import com.opencsv.CSVReader;
+import com.opencsv.CSVWriter;
+import com.opencsv.exceptions.CsvValidationException;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Writes crash CSV files of any size for the benchmarks. Rows are drawn at random from
+ * the 10k crash fixture, so every column keeps the fixture's distribution, then given
+ * their own OBJECTID and moved a few metres so no two crashes share a location.
+ *
+ * @author Team 10
+ */
+public class SyntheticCrashData {
+    /** Resource path of the crash fixture the rows are drawn from. */
+    public static final String FIXTURE = "/files/crash_data_10k.csv";
+    private static final double JITTER_DEGREES = 0.0005;
+    private final String[] header;
+    private final List<String[]> rows = new ArrayList<>();
+    private final int objectIdColumn;
+    private final int latitudeColumn;
+    private final int longitudeColumn;
+
+    /**
+     * Reads the rows of the crash fixture.
+     *
+     * @throws IOException if the fixture cannot be read
+     */
+    public SyntheticCrashData() throws IOException {
+        try (InputStream in = SyntheticCrashData.class.getResourceAsStream(FIXTURE);
+             CSVReader csvReader = new CSVReader(
+                     new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            header = csvReader.readNext();
+            String[] row;
+            while ((row = csvReader.readNext()) != null) {
+                if (row.length == header.length) {
+                    rows.add(row);
+                }
+            }
+        } catch (CsvValidationException | NullPointerException exception) {
+            throw new IOException("Could not read crash fixture " + FIXTURE, exception);
+        }
+        List<String> columns = Arrays.asList(header);
+        objectIdColumn = columns.indexOf("OBJECTID");
+        latitudeColumn = columns.indexOf("lat");
+        longitudeColumn = columns.indexOf("lng");
+    }
+
+    /**
+     * Gets the number of usable rows in the fixture.
+     *
+     * @return number of fixture rows
+     */
+    public int getFixtureSize() {
+        return rows.size();
+    }
+
+    /**
+     * Writes a CSV file of crashes drawn from the fixture. The same seed always gives
+     * the same file.
+     *
+     * @param file file to write
+     * @param count number of crashes to write
+     * @param seed seed for choosing and moving rows
+     * @throws IOException if the file cannot be written
+     */
+    public void write(File file, int count, long seed) throws IOException {
+        Random random = new Random(seed);
+        try (CSVWriter csvWriter = new CSVWriter(new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(file), StandardCharsets.UTF_8)))) {
+            csvWriter.writeNext(header, false);
+            for (int i = 0; i < count; i++) {
+                String[] row = rows.get(random.nextInt(rows.size())).clone();
+                row[objectIdColumn] = String.valueOf(i + 1);
+                row[latitudeColumn] = jitter(row[latitudeColumn], random);
+                row[longitudeColumn] = jitter(row[longitudeColumn], random);
+                csvWriter.writeNext(row, false);
+            }
+        }
+    }
+
+    private static String jitter(String value, Random random) {
+        try {
+            double offset = (random.nextDouble() * 2 - 1) * JITTER_DEGREES;
+            return String.format(Locale.ROOT, "%.10f", Double.parseDouble(value) + offset);
+        } catch (NumberFormatException numberFormatException) {
+            return value;
+        }
+    }
+}
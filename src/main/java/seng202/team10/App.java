@@ -1,5 +1,6 @@
 package seng202.team10;
 
+import seng202.team10.business.CrashManager;
 import seng202.team10.gui.MainWindow;
 import seng202.team10.repository.DatabaseManager;
 
@@ -19,6 +20,7 @@ public class App {
     public static void main(String[] args) {
         // Initialises database and checks if populated
         DatabaseManager.getInstance().initialiseDatabase("files/crash_data.csv");
+        new CrashManager().logQueryPlans();
         MainWindow.main(args);
     }
 }
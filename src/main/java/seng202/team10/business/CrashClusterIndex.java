@@ -0,0 +1,420 @@
+package seng202.team10.business;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import seng202.team10.models.CrashCluster;
+import seng202.team10.models.CrashPoint;
+import seng202.team10.models.HeatmapCell;
+
+/**
+ * Clusters crash points for every zoom level of the map at once, so the map only has
+ * to draw the clusters in view rather than cluster every crash itself on each zoom.
+ *
+ * <p>At each zoom, crashes are grouped by the 64 pixel cell of the Web Mercator map
+ * they fall in. Cells are numbered along a Z-order curve, so the four cells inside a
+ * cell one zoom out have consecutive numbers. Sorting the crashes by cell once then
+ * makes every cluster, at every zoom, a consecutive run of crashes, and each zoom is
+ * built from the one below it in a single pass.</p>
+ *
+ * <p>The same cells make up the heatmap's density grids. At each zoom the heatmap is
+ * drawn from the cells of two zooms further in, which are 16 pixels across on screen,
+ * weighted by the total severity of the crashes in them.</p>
+ *
+ * @author Team 10
+ */
+public class CrashClusterIndex {
+    /** Deepest zoom crashes are clustered at. Closer in, crashes are shown one by one. */
+    public static final int MAX_CLUSTER_ZOOM = 16;
+    private static final int CELL_PIXELS_LOG2 = 6;
+    private static final int TILE_PIXELS_LOG2 = 8;
+    private static final int HEATMAP_ZOOM_OFFSET = 2;
+    // Share of heatmap cells drawn below full intensity, so a few very dense cells do not
+    // wash out the rest of the map
+    private static final double HEATMAP_MAX_PERCENTILE = 0.95;
+    // Leaves room below the finest cell number for the index of the crash it holds
+    private static final int INDEX_BITS = 27;
+    private static final long INDEX_MASK = (1L << INDEX_BITS) - 1;
+    private final List<CrashPoint> crashes;
+    private final int[] order;
+    private final Level[] levels = new Level[MAX_CLUSTER_ZOOM + 1];
+    private final long[] heatmapMaxima = new long[MAX_CLUSTER_ZOOM + 1];
+
+    /**
+     * Clusters of one zoom level, sorted by cell. Cluster i holds the crashes from
+     * order[starts[i]] up to but not including order[starts[i + 1]].
+     */
+    private record Level(long[] cells, int[] starts, double[] x, double[] y,
+                         long[] severitySums, byte[] expansionZooms) {
+        int size() {
+            return cells.length;
+        }
+    }
+
+    /**
+     * Clusters a list of crash points.
+     *
+     * @param crashes crash points to cluster
+     */
+    public CrashClusterIndex(List<CrashPoint> crashes) {
+        if (crashes.size() > INDEX_MASK) {
+            throw new IllegalArgumentException("Too many crashes to cluster: " + crashes.size());
+        }
+        this.crashes = crashes;
+        int count = crashes.size();
+        long[] sorted = new long[count];
+        for (int i = 0; i < count; i++) {
+            CrashPoint crash = crashes.get(i);
+            long cell = cellAt(mercatorX(crash.longitude()), mercatorY(crash.latitude()),
+                    MAX_CLUSTER_ZOOM);
+            sorted[i] = cell << INDEX_BITS | i;
+        }
+        Arrays.sort(sorted);
+
+        // The crashes themselves, as clusters of one, form the level below the deepest zoom
+        order = new int[count];
+        long[] cells = new long[count];
+        int[] starts = new int[count + 1];
+        double[] x = new double[count];
+        double[] y = new double[count];
+        long[] severities = new long[count];
+        byte[] expansionZooms = new byte[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = (int) (sorted[i] & INDEX_MASK);
+            CrashPoint crash = crashes.get(order[i]);
+            cells[i] = sorted[i] >>> INDEX_BITS;
+            starts[i] = i;
+            x[i] = mercatorX(crash.longitude());
+            y[i] = mercatorY(crash.latitude());
+            severities[i] = crash.severity();
+            expansionZooms[i] = MAX_CLUSTER_ZOOM + 1;
+        }
+        starts[count] = count;
+
+        Level level = new Level(cells, starts, x, y, severities, expansionZooms);
+        for (int zoom = MAX_CLUSTER_ZOOM; zoom >= 0; zoom--) {
+            level = mergeCells(level, zoom, zoom == MAX_CLUSTER_ZOOM ? 0 : 2);
+            levels[zoom] = level;
+        }
+    }
+
+    /**
+     * Groups the clusters of one level by the cell they fall in one zoom further out.
+     *
+     * @param children clusters to group
+     * @param zoom zoom of the level being built
+     * @param shift bits to drop from the children's cell numbers to get their parent's
+     * @return clusters of the new level
+     */
+    private static Level mergeCells(Level children, int zoom, int shift) {
+        int childCount = children.size();
+        int parentCount = 0;
+        for (int i = 0; i < childCount; i++) {
+            if (i == 0 || children.cells[i] >>> shift != children.cells[i - 1] >>> shift) {
+                parentCount++;
+            }
+        }
+
+        long[] cells = new long[parentCount];
+        int[] starts = new int[parentCount + 1];
+        double[] x = new double[parentCount];
+        double[] y = new double[parentCount];
+        long[] severitySums = new long[parentCount];
+        byte[] expansionZooms = new byte[parentCount];
+        int parent = -1;
+        int firstChild = 0;
+        for (int i = 0; i < childCount; i++) {
+            long cell = children.cells[i] >>> shift;
+            if (parent < 0 || cell != cells[parent]) {
+                parent++;
+                firstChild = i;
+                cells[parent] = cell;
+                starts[parent] = children.starts[i];
+                expansionZooms[parent] = children.expansionZooms[i];
+            } else if (i == firstChild + 1) {
+                // A cluster with more than one child splits up at the next zoom in
+                expansionZooms[parent] = (byte) (zoom + 1);
+            }
+            int weight = children.starts[i + 1] - children.starts[i];
+            x[parent] += children.x[i] * weight;
+            y[parent] += children.y[i] * weight;
+            severitySums[parent] += children.severitySums[i];
+        }
+        starts[parentCount] = children.starts[childCount];
+        for (int i = 0; i < parentCount; i++) {
+            int weight = starts[i + 1] - starts[i];
+            x[i] /= weight;
+            y[i] /= weight;
+        }
+        return new Level(cells, starts, x, y, severitySums, expansionZooms);
+    }
+
+    /**
+     * Gets the number of crashes clustered.
+     *
+     * @return number of crashes
+     */
+    public int size() {
+        return crashes.size();
+    }
+
+    /**
+     * Gets the clusters in a viewport at a zoom level. Past {@link #MAX_CLUSTER_ZOOM}
+     * every crash in the viewport is returned as a cluster of one.
+     *
+     * @param minLatitude southern edge of the viewport
+     * @param minLongitude western edge of the viewport
+     * @param maxLatitude northern edge of the viewport
+     * @param maxLongitude eastern edge of the viewport
+     * @param zoom zoom level of the map
+     * @return clusters whose cell overlaps the viewport
+     */
+    public List<CrashCluster> getClusters(double minLatitude, double minLongitude,
+                                          double maxLatitude, double maxLongitude, int zoom) {
+        int cellZoom = Math.max(0, Math.min(zoom, MAX_CLUSTER_ZOOM));
+        Level level = levels[cellZoom];
+        List<CrashCluster> clusters = new ArrayList<>();
+        for (int i : cellsInView(cellZoom, mercatorX(minLongitude), mercatorY(maxLatitude),
+                mercatorX(maxLongitude), mercatorY(minLatitude))) {
+            if (zoom > MAX_CLUSTER_ZOOM) {
+                for (int j = level.starts[i]; j < level.starts[i + 1]; j++) {
+                    CrashPoint crash = crashes.get(order[j]);
+                    if (inBounds(crash, minLatitude, minLongitude, maxLatitude, maxLongitude)) {
+                        clusters.add(single(crash));
+                    }
+                }
+            } else {
+                clusters.add(cluster(level, i));
+            }
+        }
+        return clusters;
+    }
+
+    /**
+     * Gets the clusters on the map tiles a viewport overlaps at a zoom level, grouped by
+     * tile. Tiles are the map's 256 pixel tiles, numbered along a Z-order curve at the
+     * zoom, so the map can keep the clusters of each tile until it leaves the viewport.
+     * Past {@link #MAX_CLUSTER_ZOOM} every crash on the tiles is a cluster of one.
+     *
+     * @param minLatitude southern edge of the viewport
+     * @param minLongitude western edge of the viewport
+     * @param maxLatitude northern edge of the viewport
+     * @param maxLongitude eastern edge of the viewport
+     * @param zoom zoom level of the map
+     * @return clusters on each tile in view, by tile number, leaving out empty tiles
+     */
+    public Map<Long, List<CrashCluster>> getClustersByTile(double minLatitude,
+                                                           double minLongitude,
+                                                           double maxLatitude,
+                                                           double maxLongitude, int zoom) {
+        int tileZoom = Math.max(0, zoom);
+        int minTileX = gridIndex(mercatorX(minLongitude), tileZoom, TILE_PIXELS_LOG2);
+        int maxTileX = gridIndex(mercatorX(maxLongitude), tileZoom, TILE_PIXELS_LOG2);
+        int minTileY = gridIndex(mercatorY(maxLatitude), tileZoom, TILE_PIXELS_LOG2);
+        int maxTileY = gridIndex(mercatorY(minLatitude), tileZoom, TILE_PIXELS_LOG2);
+        double tiles = 1 << tileZoom;
+
+        int cellZoom = Math.min(tileZoom, MAX_CLUSTER_ZOOM);
+        Level level = levels[cellZoom];
+        Map<Long, List<CrashCluster>> byTile = new LinkedHashMap<>();
+        for (int i : cellsInView(cellZoom, minTileX / tiles, minTileY / tiles,
+                (maxTileX + 1) / tiles, (maxTileY + 1) / tiles)) {
+            if (zoom > MAX_CLUSTER_ZOOM) {
+                for (int j = level.starts[i]; j < level.starts[i + 1]; j++) {
+                    CrashPoint crash = crashes.get(order[j]);
+                    addToTile(byTile, gridIndex(mercatorX(crash.longitude()), tileZoom,
+                            TILE_PIXELS_LOG2), gridIndex(mercatorY(crash.latitude()), tileZoom,
+                            TILE_PIXELS_LOG2), single(crash),
+                            minTileX, minTileY, maxTileX, maxTileY);
+                }
+            } else {
+                long tile = level.cells[i] >>> 2 * (TILE_PIXELS_LOG2 - CELL_PIXELS_LOG2);
+                addToTile(byTile, (int) compact(tile), (int) compact(tile >>> 1),
+                        cluster(level, i), minTileX, minTileY, maxTileX, maxTileY);
+            }
+        }
+        return byTile;
+    }
+
+    private static void addToTile(Map<Long, List<CrashCluster>> byTile, int tileX, int tileY,
+                                  CrashCluster cluster, int minTileX, int minTileY,
+                                  int maxTileX, int maxTileY) {
+        // Cells just past the last tile are found at its edge, and left out here
+        if (tileX >= minTileX && tileX <= maxTileX && tileY >= minTileY && tileY <= maxTileY) {
+            byTile.computeIfAbsent(interleave(tileX, tileY), tile -> new ArrayList<>())
+                    .add(cluster);
+        }
+    }
+
+    /**
+     * Gets the heatmap cells in a viewport at a zoom level, each at the centre of the
+     * crashes in it. Once the cells would be coarser than 16 pixels, every crash in the
+     * viewport is returned as a cell of its own.
+     *
+     * @param minLatitude southern edge of the viewport
+     * @param minLongitude western edge of the viewport
+     * @param maxLatitude northern edge of the viewport
+     * @param maxLongitude eastern edge of the viewport
+     * @param zoom zoom level of the map
+     * @return heatmap cells overlapping the viewport
+     */
+    public List<HeatmapCell> getHeatmapCells(double minLatitude, double minLongitude,
+                                             double maxLatitude, double maxLongitude,
+                                             int zoom) {
+        int cellZoom = heatmapZoom(zoom);
+        Level level = levels[cellZoom];
+        List<HeatmapCell> cells = new ArrayList<>();
+        for (int i : cellsInView(cellZoom, mercatorX(minLongitude), mercatorY(maxLatitude),
+                mercatorX(maxLongitude), mercatorY(minLatitude))) {
+            if (zoom + HEATMAP_ZOOM_OFFSET > MAX_CLUSTER_ZOOM) {
+                for (int j = level.starts[i]; j < level.starts[i + 1]; j++) {
+                    CrashPoint crash = crashes.get(order[j]);
+                    if (inBounds(crash, minLatitude, minLongitude, maxLatitude, maxLongitude)) {
+                        cells.add(new HeatmapCell(crash.latitude(), crash.longitude(), 1,
+                                crash.severity()));
+                    }
+                }
+            } else {
+                cells.add(new HeatmapCell(latitude(level.y[i]), longitude(level.x[i]),
+                        level.starts[i + 1] - level.starts[i], level.severitySums[i]));
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * Gets the severity total drawn at full intensity on the heatmap at a zoom level.
+     * It is the same wherever the map is moved to, so colours can be compared across it.
+     *
+     * @param zoom zoom level of the map
+     * @return severity total of all but the densest few heatmap cells at the zoom
+     */
+    public synchronized long getHeatmapMax(int zoom) {
+        int cellZoom = heatmapZoom(zoom);
+        if (heatmapMaxima[cellZoom] == 0 && levels[cellZoom].size() > 0) {
+            long[] sums = levels[cellZoom].severitySums.clone();
+            Arrays.sort(sums);
+            heatmapMaxima[cellZoom] = sums[(int) ((sums.length - 1) * HEATMAP_MAX_PERCENTILE)];
+        }
+        return heatmapMaxima[cellZoom];
+    }
+
+    private static int heatmapZoom(int zoom) {
+        return Math.max(0, Math.min(zoom + HEATMAP_ZOOM_OFFSET, MAX_CLUSTER_ZOOM));
+    }
+
+    /**
+     * Finds the cells of a level that overlap an area of the Web Mercator map, where
+     * y increases southwards.
+     *
+     * @return indexes of the cells in the level
+     */
+    private List<Integer> cellsInView(int cellZoom, double minX, double minY,
+                                      double maxX, double maxY) {
+        Level level = levels[cellZoom];
+        int minCellX = cellIndex(minX, cellZoom);
+        int maxCellX = cellIndex(maxX, cellZoom);
+        int minCellY = cellIndex(minY, cellZoom);
+        int maxCellY = cellIndex(maxY, cellZoom);
+
+        List<Integer> inView = new ArrayList<>();
+        long cellsInView = (long) (maxCellX - minCellX + 1) * (maxCellY - minCellY + 1);
+        if (cellsInView > level.size()) {
+            for (int i = 0; i < level.size(); i++) {
+                int cellX = (int) compact(level.cells[i]);
+                int cellY = (int) compact(level.cells[i] >>> 1);
+                if (cellX >= minCellX && cellX <= maxCellX
+                        && cellY >= minCellY && cellY <= maxCellY) {
+                    inView.add(i);
+                }
+            }
+        } else {
+            for (int cellY = minCellY; cellY <= maxCellY; cellY++) {
+                for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+                    int i = Arrays.binarySearch(level.cells, interleave(cellX, cellY));
+                    if (i >= 0) {
+                        inView.add(i);
+                    }
+                }
+            }
+        }
+        return inView;
+    }
+
+    private static boolean inBounds(CrashPoint crash, double minLatitude, double minLongitude,
+                                    double maxLatitude, double maxLongitude) {
+        return crash.latitude() >= minLatitude && crash.latitude() <= maxLatitude
+                && crash.longitude() >= minLongitude && crash.longitude() <= maxLongitude;
+    }
+
+    private CrashCluster cluster(Level level, int i) {
+        int count = level.starts[i + 1] - level.starts[i];
+        if (count == 1) {
+            return single(crashes.get(order[level.starts[i]]));
+        }
+        return new CrashCluster(latitude(level.y[i]), longitude(level.x[i]), count,
+                (double) level.severitySums[i] / count, level.expansionZooms[i], null);
+    }
+
+    private static CrashCluster single(CrashPoint crash) {
+        return new CrashCluster(crash.latitude(), crash.longitude(), 1, crash.severity(),
+                MAX_CLUSTER_ZOOM + 1, crash);
+    }
+
+    private static double mercatorX(double longitude) {
+        return longitude / 360 + 0.5;
+    }
+
+    private static double mercatorY(double latitude) {
+        double sin = Math.sin(Math.toRadians(latitude));
+        double y = 0.5 - 0.25 * Math.log((1 + sin) / (1 - sin)) / Math.PI;
+        return Math.max(0, Math.min(1, y));
+    }
+
+    private static double longitude(double x) {
+        return (x - 0.5) * 360;
+    }
+
+    private static double latitude(double y) {
+        return Math.toDegrees(Math.atan(Math.sinh(Math.PI * (1 - 2 * y))));
+    }
+
+    private static int cellIndex(double mercator, int zoom) {
+        return gridIndex(mercator, zoom, CELL_PIXELS_LOG2);
+    }
+
+    // Finds the square of a grid the point falls in, for squares of 2^pixelsLog2 pixels
+    private static int gridIndex(double mercator, int zoom, int pixelsLog2) {
+        int squares = 1 << (zoom + 8 - pixelsLog2);
+        return Math.max(0, Math.min(squares - 1, (int) (mercator * squares)));
+    }
+
+    private static long cellAt(double x, double y, int zoom) {
+        return interleave(cellIndex(x, zoom), cellIndex(y, zoom));
+    }
+
+    // Interleaves the bits of a cell's column and row into its Z-order number
+    private static long interleave(int cellX, int cellY) {
+        return spread(cellX) | spread(cellY) << 1;
+    }
+
+    private static long spread(long value) {
+        value &= 0xFFFFFFFFL;
+        value = (value | value << 16) & 0x0000FFFF0000FFFFL;
+        value = (value | value << 8) & 0x00FF00FF00FF00FFL;
+        value = (value | value << 4) & 0x0F0F0F0F0F0F0F0FL;
+        value = (value | value << 2) & 0x3333333333333333L;
+        return (value | value << 1) & 0x5555555555555555L;
+    }
+
+    private static long compact(long value) {
+        value &= 0x5555555555555555L;
+        value = (value | value >>> 1) & 0x3333333333333333L;
+        value = (value | value >>> 2) & 0x0F0F0F0F0F0F0F0FL;
+        value = (value | value >>> 4) & 0x00FF00FF00FF00FFL;
+        value = (value | value >>> 8) & 0x0000FFFF0000FFFFL;
+        return (value | value >>> 16) & 0x00000000FFFFFFFFL;
+    }
+}
@@ -0,0 +1,61 @@
+package seng202.team10.business;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import javafx.concurrent.Task;
+import seng202.team10.io.CrashCsvImporter;
+import seng202.team10.io.RejectedRowLog;
+import seng202.team10.repository.DatabaseManager;
+
+/**
+ * Imports crash files off the JavaFX application thread. The task's value is
+ * updated with the import's progress after each chunk is committed and its message
+ * describes it for display. Cancelling the task stops the import between chunks,
+ * leaving the chunks already committed in the database. Rows that cannot be imported
+ * are saved to the database's quarantine file with the reason they were rejected.
+ *
+ * @author Team 10
+ */
+public class CrashImportTask extends Task<ImportProgress> {
+    private final List<File> sources;
+    private final boolean updateExisting;
+
+    /**
+     * Creates a task importing the given files and directories.
+     *
+     * @param sources CSV, gzip or zip files of crashes, or directories of them
+     * @param updateExisting true to update crashes already imported with the same OBJECTID,
+     *                       false to add every crash under a new id
+     */
+    public CrashImportTask(List<File> sources, boolean updateExisting) {
+        this.sources = List.copyOf(sources);
+        this.updateExisting = updateExisting;
+    }
+
+    /**
+     * Runs the import, cancelled cooperatively so a chunk is never left half written.
+     *
+     * @return progress at the end of the import, or null if it was cancelled
+     * @throws Exception if the file cannot be imported
+     */
+    @Override
+    protected ImportProgress call() throws Exception {
+        List<File> files = CrashCsvImporter.expandSources(sources);
+        updateMessage("Importing " + files.size() + " file(s)");
+        try (RejectedRowLog rejectedRows = new RejectedRowLog(
+                DatabaseManager.getInstance().getQuarantineFile())) {
+            ImportProgress result = new CrashManager().addAllCrashesFromFiles(
+                    new CrashCsvImporter(rejectedRows), files, updateExisting, this::isCancelled,
+                    progress -> {
+                        updateValue(progress);
+                        updateMessage(progress.describe());
+                    });
+            updateMessage("Imported " + result.describe()
+                    + (rejectedRows.getTotal() > 0 ? ". " + rejectedRows.summary() : ""));
+            return result;
+        } catch (CancellationException cancellationException) {
+            return null;
+        }
+    }
+}
@@ -1,12 +1,27 @@
 package seng202.team10.business;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import seng202.team10.exceptions.DataImportException;
 import seng202.team10.io.CrashCsvImporter;
+import seng202.team10.io.CrashSnapshot;
 import seng202.team10.models.Crash;
+import seng202.team10.models.CrashPoint;
+import seng202.team10.models.Weather;
+import seng202.team10.repository.DatabaseConfig;
+import seng202.team10.repository.DatabaseManager;
+import seng202.team10.repository.IndexManager;
+import seng202.team10.repository.QueryCondition;
+import seng202.team10.repository.RowMapper;
 import seng202.team10.repository.SqliteQueryBuilder;
 
 /**
@@ -25,20 +40,195 @@ import seng202.team10.repository.SqliteQueryBuilder;
 
 public class CrashManager {
     private static final Logger log = LogManager.getLogger(CrashManager.class);
+    private static final int STREAM_FETCH_SIZE = 1000;
+    // Average size of a row in the NZTA crash CSV, to estimate rows from file sizes
+    private static final int ESTIMATED_BYTES_PER_ROW = 280;
+    // Rebuilding the indexes covers the rows already in the table too, so only bulk load
+    // an import bringing at least this many times as many rows as the table holds
+    private static final int BULK_LOAD_MIN_GROWTH = 2;
+
+    /**
+     * Columns to select for {@link #CRASH_POINT_MAPPER}, in the order it reads them.
+     */
+    public static final String CRASH_POINT_COLUMNS =
+            "object_id, latitude, longitude, severity, crash_year, weather";
+
+    /**
+     * Maps a row selected with {@link #CRASH_POINT_COLUMNS} to a CrashPoint.
+     */
+    public static final RowMapper<CrashPoint> CRASH_POINT_MAPPER = rs -> new CrashPoint(
+            rs.getInt(1), rs.getDouble(2), rs.getDouble(3), rs.getInt(4), rs.getInt(5),
+            Weather.nameToWeather(rs.getString(6)));
 
     /**
      * Saves a file of sales to the repository layer.
      * Does this by using the specified crash csv importer functionality.
+     * Crashes are parsed on several threads and inserted in chunks on this one, each
+     * chunk committed in its own transaction, so the whole file is never held in memory.
+     * Each crash is added under a new id, alongside any already in the database.
      *
      * @param importer Crash csv importer object to use
      * @param file File to be imported
      */
     public void addAllCrashesFromFile(CrashCsvImporter importer, File file)
             throws DataImportException {
-        List<Crash> crashes = importer.crashListFromFile(file);
-        SqliteQueryBuilder.create().insert("crashes").buildSetter(crashes);
+        addAllCrashesFromFiles(importer, List.of(file), false, () -> false, progress -> { });
+    }
+
+    /**
+     * Saves files of crashes to the repository layer one after another as
+     * {@link #addAllCrashesFromFile(CrashCsvImporter, File)} does, reporting progress
+     * across all of them after each chunk is committed and checking for cancellation
+     * before the next is written. A cancelled import stops between chunks, so the
+     * database keeps every chunk committed so far and none of the rest.
+     * Crashes are added under new ids unless updateExisting is set, in which case they
+     * keep the file's OBJECTID and ones already in the database are updated only if they
+     * differ, so importing the same file twice leaves the database unchanged.
+     * Imports into an empty table, and large ones into a much smaller table, are bulk
+     * loaded: the crash indexes and spatial index are rebuilt once at the end rather than
+     * kept up to date row by row.
+     *
+     * @param importer Crash csv importer object to use
+     * @param files CSV, gzip or zip files to be imported, in order
+     * @param updateExisting true to key crashes on their OBJECTID, false to add them as new
+     * @param cancelled checked before each chunk is written, true to stop the import
+     * @param progressListener called on this thread after each chunk is committed
+     * @return progress at the end of the import
+     * @throws DataImportException if a file cannot be read
+     * @throws CancellationException if the import was cancelled
+     */
+    public ImportProgress addAllCrashesFromFiles(CrashCsvImporter importer, List<File> files,
+                                                 boolean updateExisting,
+                                                 BooleanSupplier cancelled,
+                                                 Consumer<ImportProgress> progressListener)
+            throws DataImportException {
+        int chunkSize = new DatabaseConfig().getImportChunkSize();
+        long start = System.nanoTime();
+        AtomicInteger parsed = new AtomicInteger();
+        // When keyed on the file's OBJECTID, re-importing a file only writes rows that changed
+        AtomicInteger changed = new AtomicInteger();
+        AtomicReference<ImportProgress> progress = new AtomicReference<>(
+                new ImportProgress(0, 0, 0, 0));
+        IndexManager indexManager = DatabaseManager.getInstance().getIndexManager();
+        boolean bulkLoad = isBulkLoad(files);
+        if (bulkLoad) {
+            indexManager.beginBulkLoad();
+        }
+        try {
+            for (File file : files) {
+                importer.readCrashesInParallel(file, chunkSize, parserThreads(), chunk -> {
+                    if (cancelled.getAsBoolean()) {
+                        throw new CancellationException("Import of " + file.getName()
+                                + " cancelled");
+                    }
+                    SqliteQueryBuilder builder = updateExisting
+                            ? SqliteQueryBuilder.create().upsert("crashes")
+                            : SqliteQueryBuilder.create().insert("crashes");
+                    changed.addAndGet(builder.buildSetter(chunk));
+                    parsed.addAndGet(chunk.size());
+                    double seconds = Math.max((System.nanoTime() - start) / 1e9, 1e-3);
+                    progress.set(new ImportProgress(parsed.get(), changed.get(),
+                            importer.getRejectedCount(), parsed.get() / seconds));
+                    progressListener.accept(progress.get());
+                });
+                log.info(String.format("Imported %s after %.1f s: %s", file.getName(),
+                        (System.nanoTime() - start) / 1e9, progress.get().describe()));
+            }
+        } finally {
+            if (bulkLoad) {
+                indexManager.endBulkLoad();
+            }
+            MapDataManager.getInstance().invalidate();
+        }
+        if (importer.getRejectedCount() > 0) {
+            log.warn(importer.getRejectedRows().summary());
+        }
+        return progress.get();
+    }
+
+    /**
+     * Parses a crash CSV file into a binary snapshot, without touching the database.
+     *
+     * @param importer Crash csv importer object to use
+     * @param file File to be parsed
+     * @param snapshotFile File to write the snapshot to
+     * @param sourceLength Size of the CSV the file was copied from, recorded in the snapshot
+     * @param sourceChecksum CRC32 checksum of the CSV, recorded in the snapshot
+     * @throws DataImportException if the CSV file cannot be read
+     * @throws IOException if the snapshot cannot be written
+     */
+    public void writeSnapshotFromFile(CrashCsvImporter importer, File file, File snapshotFile,
+                                      long sourceLength, long sourceChecksum)
+            throws DataImportException, IOException {
+        long start = System.nanoTime();
+        CrashSnapshot.Writer writer = new CrashSnapshot.Writer();
+        importer.readCrashesInParallel(file, new DatabaseConfig().getImportChunkSize(),
+                parserThreads(), writer::addAll);
+        writer.write(snapshotFile, sourceLength, sourceChecksum, CrashCsvImporter.PARSER_VERSION);
+        log.info(String.format("Saved snapshot of %d crashes to %s in %.1f s", writer.size(),
+                snapshotFile, (System.nanoTime() - start) / 1e9));
+    }
+
+    /**
+     * Saves every crash in a snapshot to the repository layer, in chunks committed in
+     * their own transactions. Crashes keep their ids, so loading the same snapshot twice
+     * leaves the database unchanged. Snapshots are used to fill an empty database, so
+     * they are always bulk loaded.
+     *
+     * @param snapshot Snapshot to load
+     */
+    public void addAllCrashesFromSnapshot(CrashSnapshot snapshot) {
+        long start = System.nanoTime();
+        IndexManager indexManager = DatabaseManager.getInstance().getIndexManager();
+        indexManager.beginBulkLoad();
+        int loaded;
+        try {
+            loaded = snapshot.readCrashesInChunks(new DatabaseConfig().getImportChunkSize(),
+                    chunk -> SqliteQueryBuilder.create().upsert("crashes").buildSetter(chunk));
+        } finally {
+            indexManager.endBulkLoad();
+            MapDataManager.getInstance().invalidate();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        log.info(String.format("Loaded %d crashes from snapshot in %.1f s (%.0f rows/s)",
+                loaded, seconds, loaded / Math.max(seconds, 1e-3)));
+    }
+
+    /**
+     * Checks whether an import is large enough that rebuilding the indexes afterwards is
+     * quicker than updating them for each row. Imports into an empty table are bulk
+     * loaded, as are those of at least the bulk load size that bring at least
+     * {@value #BULK_LOAD_MIN_GROWTH} times as many rows as the table already holds, so
+     * re-importing a file into a populated table keeps the triggers. Compressed files
+     * count at their compressed size.
+     *
+     * @param files files to be imported
+     * @return true to bulk load the files
+     */
+    private static boolean isBulkLoad(List<File> files) {
+        List<Integer> existing = SqliteQueryBuilder.create()
+                .select("COUNT(*)").from("crashes").buildGetter(rs -> rs.getInt(1));
+        if (existing.isEmpty()) {
+            return false;
+        } else if (existing.get(0) == 0) {
+            return true;
+        }
+        long bytes = files.stream().mapToLong(File::length).sum();
+        long incoming = bytes / ESTIMATED_BYTES_PER_ROW;
+        return bytes >= new DatabaseConfig().getBulkLoadMinBytes()
+                && incoming >= (long) BULK_LOAD_MIN_GROWTH * existing.get(0);
     }
 
+    /**
+     * Gets how many threads parse CSV rows while another reads the file and this one
+     * writes to the database.
+     *
+     * @return number of parser threads
+     */
+    public static int parserThreads() {
+        // The reader and this writer thread each take a core, the parsers share the rest
+        return Math.max(1, Runtime.getRuntime().availableProcessors() - 2);
+    }
 
     /**
      * Retrieves a Crash object by its unique identifier (ID) from the database.
@@ -48,32 +238,64 @@ public class CrashManager {
      */
     public Crash getCrash(int id) {
         return (Crash) SqliteQueryBuilder.create().select("*").from("crashes")
-                .where("object_id = " + id).buildGetter().get(0);
+                .where("object_id = ?", id).buildGetter().get(0);
     }
 
     /**
      * Retrieves crash locations from the database based on selected filters.
      *
-     * @return A list of crash locations containing longitude, latitude, and severity.
+     * @return A list of crash points with location, severity, year and weather.
      */
-    public List<?> getCrashLocations() {
-        String select = "longitude, latitude, severity, crash_year, weather";
+    public List<CrashPoint> getCrashLocations() {
+        return crashLocationsQuery().buildGetter(CRASH_POINT_MAPPER);
+    }
+
+    /**
+     * Streams the locations of crashes matching a condition, reading them as the stream
+     * is consumed. The stream must be closed after use to release its database connection.
+     *
+     * @param where condition crashes must match
+     * @return A stream of crash points with location, severity, year and weather.
+     */
+    public Stream<CrashPoint> streamCrashLocations(QueryCondition where) {
+        return crashLocationsQuery(where).fetchSize(STREAM_FETCH_SIZE)
+                .buildStream(CRASH_POINT_MAPPER);
+    }
+
+    /**
+     * Logs the query plans of the map and graph queries for the current filters.
+     */
+    public void logQueryPlans() {
+        IndexManager indexManager = DatabaseManager.getInstance().getIndexManager();
+        FilterManager filterManager = FilterManager.getInstance();
+
+        log.info("Query plan for crash locations: "
+                + indexManager.explainQueryPlan(crashLocationsQuery()));
+        log.info("Query plan for severity counts: " + indexManager.explainQueryPlan(
+                SqliteQueryBuilder.create()
+                        .select("severity, COUNT(*)")
+                        .from("crashes")
+                        .groupBy("severity")));
+        log.info("Query plan for filtered severity counts: " + indexManager.explainQueryPlan(
+                SqliteQueryBuilder.create()
+                        .select("severity, COUNT(*)")
+                        .from("crashes")
+                        .where(filterManager.getFilterCondition())
+                        .groupBy("+severity")));
+    }
+
+    private SqliteQueryBuilder crashLocationsQuery() {
+        return crashLocationsQuery(FilterManager.getInstance().getCondition());
+    }
+
+    private SqliteQueryBuilder crashLocationsQuery(QueryCondition where) {
+        String select = CRASH_POINT_COLUMNS;
         String from = "crashes";
-        String where = FilterManager.getInstance().toString();
-
-        if (where.isEmpty()) {
-            return SqliteQueryBuilder
-                    .create()
-                    .select(select)
-                    .from(from)
-                    .buildGetter();
-        } else {
-            return SqliteQueryBuilder
-                    .create()
-                    .select(select)
-                    .from(from)
-                    .where(where)
-                    .buildGetter();
-        }
+
+        return SqliteQueryBuilder
+                .create()
+                .select(select)
+                .from(from)
+                .where(where);
     }
 }
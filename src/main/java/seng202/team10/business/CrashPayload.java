@@ -0,0 +1,141 @@
+package seng202.team10.business;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import org.json.simple.JSONArray;
+import seng202.team10.models.CrashCluster;
+import seng202.team10.models.HeatmapCell;
+import seng202.team10.models.MarkerUpdate;
+import seng202.team10.models.Weather;
+
+/**
+ * Packs the crash markers and heatmap cells shown on the map into the binary layout map.js
+ * reads straight into typed arrays, so the map is sent a few bytes per item rather than
+ * a script to evaluate. Each payload is base64 encoded and, in little endian order,
+ * holds the number of items as an int32 followed by one array per field. Each array
+ * starts at a multiple of its element size, as typed arrays over the buffer require.
+ *
+ * @author Team 10
+ */
+public final class CrashPayload {
+    /** Bytes taken by each cluster across all the arrays. */
+    public static final int BYTES_PER_CLUSTER = 4 + 4 + 4 + 4 + 4 + 2 + 1 + 1;
+    /** Bytes taken by each heatmap cell across all the arrays. */
+    public static final int BYTES_PER_HEATMAP_CELL = 4 + 4 + 4;
+    /** Bytes taken by each tile removed in a marker update. */
+    public static final int BYTES_PER_REMOVED_TILE = 8;
+    /** Bytes taken by each tile added in a marker update, besides its clusters. */
+    public static final int BYTES_PER_ADDED_TILE = 8 + 4;
+    /** Flag set in a marker update when every tile must be dropped first. */
+    public static final int TILES_RESET = 1;
+    /** Flag set in a marker update when markers kept by object id are out of date. */
+    public static final int CRASHES_CHANGED = 2;
+
+    private CrashPayload() {
+    }
+
+    /**
+     * Packs a marker update into a payload. In place of a single count it starts with
+     * four int32s: the flags, the number of tiles removed, the number of tiles added and
+     * the number of clusters on the added tiles. Then come float64 numbers of the removed
+     * tiles, float64 numbers of the added tiles and int32 numbers of clusters on each
+     * added tile, whose clusters follow in tile order as float32 latitudes, float32
+     * longitudes, int32 counts, float32 average severities, int32 object ids, int16 years,
+     * int8 expansion zooms and int8 weather codes. Clusters of more than one crash have
+     * object id -1, year 0 and weather code -1. Locations are stored as 32 bit floats,
+     * which is accurate to within a couple of metres across New Zealand.
+     *
+     * @param update marker update to pack
+     * @return base64 encoded payload
+     */
+    public static String encodeMarkerUpdate(MarkerUpdate update) {
+        List<CrashCluster> clusters = update.addedTiles().values().stream()
+                .flatMap(List::stream).toList();
+        int removed = update.removedTiles().size();
+        int added = update.addedTiles().size();
+        int count = clusters.size();
+        ByteBuffer buffer = ByteBuffer.allocate(4 * Integer.BYTES
+                + removed * BYTES_PER_REMOVED_TILE + added * BYTES_PER_ADDED_TILE
+                + count * BYTES_PER_CLUSTER).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt((update.tilesReset() ? TILES_RESET : 0)
+                | (update.crashesChanged() ? CRASHES_CHANGED : 0));
+        buffer.putInt(removed);
+        buffer.putInt(added);
+        buffer.putInt(count);
+        // Tile numbers reach 36 bits at the deepest zoom, which doubles hold exactly
+        for (long tile : update.removedTiles()) {
+            buffer.putDouble(tile);
+        }
+        for (long tile : update.addedTiles().keySet()) {
+            buffer.putDouble(tile);
+        }
+        for (List<CrashCluster> tileClusters : update.addedTiles().values()) {
+            buffer.putInt(tileClusters.size());
+        }
+        for (CrashCluster cluster : clusters) {
+            buffer.putFloat((float) cluster.latitude());
+        }
+        for (CrashCluster cluster : clusters) {
+            buffer.putFloat((float) cluster.longitude());
+        }
+        for (CrashCluster cluster : clusters) {
+            buffer.putInt(cluster.count());
+        }
+        for (CrashCluster cluster : clusters) {
+            buffer.putFloat((float) cluster.averageSeverity());
+        }
+        for (CrashCluster cluster : clusters) {
+            buffer.putInt(cluster.crash() == null ? -1 : cluster.crash().objectId());
+        }
+        for (CrashCluster cluster : clusters) {
+            buffer.putShort((short) (cluster.crash() == null ? 0 : cluster.crash().year()));
+        }
+        for (CrashCluster cluster : clusters) {
+            buffer.put((byte) cluster.expansionZoom());
+        }
+        for (CrashCluster cluster : clusters) {
+            buffer.put((byte) (cluster.crash() == null ? -1 : cluster.crash().weather().ordinal()));
+        }
+        return Base64.getEncoder().encodeToString(buffer.array());
+    }
+
+    /**
+     * Packs heatmap cells into a payload. After the count it holds the weight drawn at
+     * full intensity as a float32, then float32 latitudes, float32 longitudes and float32
+     * weights.
+     *
+     * @param cells heatmap cells to pack
+     * @param max weight drawn at full intensity
+     * @return base64 encoded payload
+     */
+    public static String encodeHeatmap(List<HeatmapCell> cells, long max) {
+        int count = cells.size();
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + Float.BYTES
+                + count * BYTES_PER_HEATMAP_CELL).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(count);
+        buffer.putFloat(max);
+        for (HeatmapCell cell : cells) {
+            buffer.putFloat((float) cell.latitude());
+        }
+        for (HeatmapCell cell : cells) {
+            buffer.putFloat((float) cell.longitude());
+        }
+        for (HeatmapCell cell : cells) {
+            buffer.putFloat(cell.severitySum());
+        }
+        return Base64.getEncoder().encodeToString(buffer.array());
+    }
+
+    /**
+     * Gets the weather names the weather codes in a payload stand for.
+     *
+     * @return JSON array of weather names, indexed by weather code
+     */
+    public static String weatherNames() {
+        return JSONArray.toJSONString(
+                Arrays.stream(Weather.values()).map(Weather::getName).toList());
+    }
+}
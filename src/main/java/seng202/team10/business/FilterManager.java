@@ -11,6 +11,7 @@ import seng202.team10.models.CrashSeverity;
 import seng202.team10.models.Location;
 import seng202.team10.models.Region;
 import seng202.team10.models.Weather;
+import seng202.team10.repository.QueryCondition;
 
 
 /**
@@ -45,6 +46,10 @@ public class FilterManager {
             put("viewport", "object_id IN (");
         }};
     private final String falseQuery = "1 = 0";
+    private static final int firstYear = 2000;
+    private static final int lastYear = 2023;
+    // Unary plus stops SQLite using an index for a predicate that matches every row
+    private static final String noIndex = "+";
 
     // Singleton instance of FilterManager
     private static FilterManager filters;
@@ -68,9 +73,9 @@ public class FilterManager {
                 Arrays.stream(CrashSeverity.values()).map(CrashSeverity::getValue).toList()
         );
 
-        earliestYear = 2000;
+        earliestYear = firstYear;
 
-        latestYear = 2023;
+        latestYear = lastYear;
 
         modesSelected = new ArrayList<>(Arrays.asList(
                 "bicycle_involved",
@@ -326,8 +331,8 @@ public class FilterManager {
         modesSelected.clear();
         weathersSelected.clear();
         regionsSelected.clear();
-        earliestYear = 2000;
-        latestYear = 2023;
+        earliestYear = firstYear;
+        latestYear = lastYear;
         holidaysSelected.clear();
 
         // If not the falseQuery, then iterate through and add
@@ -455,6 +460,86 @@ public class FilterManager {
         }
     }
 
+    /**
+     * Generates a parameterised condition from the selected filters, without the viewport.
+     * Selected values are bound as parameters, so the SQL text only changes when the
+     * number of values selected in a category changes.
+     *
+     * @return condition representing the selected filters
+     */
+    public QueryCondition getFilterCondition() {
+        if (modesSelected.isEmpty() || severitiesSelected.isEmpty() || weathersSelected.isEmpty()
+                || regionsSelected.isEmpty() || holidaysSelected.isEmpty()) {
+            return QueryCondition.of(falseQuery);
+        }
+
+        // Categories with every option selected still filter out unknown values, but scanning
+        // an index for them is slower than scanning the table, so their index is not used.
+        QueryCondition condition = QueryCondition.in(indexedColumn("severity",
+                severitiesSelected.size() >= CrashSeverity.values().length), severitiesSelected);
+
+        // Transport modes are column names so cannot be bound as parameters
+        String modesCondition = modesSelected.stream()
+                .map(mode -> mode + equalOne).collect(Collectors.joining(or));
+        condition = condition.and(QueryCondition.of(startOfClauses.get("transport_mode")
+                + modesCondition + closeParenthesis));
+
+        if (earliestYear != null && latestYear != null) {
+            boolean allYears = earliestYear <= firstYear && latestYear >= lastYear;
+            condition = condition.and(QueryCondition.of(indexedColumn("crash_year", allYears)
+                    + " BETWEEN ? AND ?", earliestYear, latestYear));
+        }
+
+        return condition
+                .and(QueryCondition.in(indexedColumn("weather",
+                        weathersSelected.size() >= Weather.values().length), weathersSelected))
+                .and(QueryCondition.in(indexedColumn("region",
+                        regionsSelected.size() >= Region.values().length), regionsSelected))
+                .and(QueryCondition.in(indexedColumn("holiday",
+                        holidaysSelected.size() >= 2), holidaysSelected));
+    }
+
+    /**
+     * Gets a column name for a condition, prefixed so SQLite will not use an index on it
+     * when every option is selected and the condition would match nearly every crash.
+     *
+     * @param column column the condition is on
+     * @param allSelected whether every option of the column is selected
+     * @return column name to use in the condition
+     */
+    private String indexedColumn(String column, boolean allSelected) {
+        return allSelected ? noIndex + column : column;
+    }
+
+    /**
+     * Generates a parameterised condition limiting crashes to the current viewport.
+     *
+     * @return condition on the viewport bounds, or an empty condition if no viewport is set
+     */
+    public QueryCondition getViewportCondition() {
+        if (viewPortMin == null || viewPortMax == null) {
+            return QueryCondition.empty();
+        }
+        return QueryCondition.of(startOfClauses.get("viewport")
+                        + "SELECT id FROM rtree_index WHERE minX >= ? AND maxX <= ? "
+                        + "AND minY >= ? AND maxY <= ?" + closeParenthesis,
+                viewPortMin.getLongitude(), viewPortMax.getLongitude(),
+                viewPortMin.getLatitude(), viewPortMax.getLatitude());
+    }
+
+    /**
+     * Generates a parameterised condition from the selected filters and the viewport.
+     *
+     * @return condition representing the selected filters within the viewport
+     */
+    public QueryCondition getCondition() {
+        QueryCondition condition = getFilterCondition();
+        if (condition.getSql().equals(falseQuery)) {
+            return condition;
+        }
+        return condition.and(getViewportCondition());
+    }
+
     /**
      * Takes a transport mode checkbox and checks if it has been selected.
      * Either adds or removes this transport mode to the FilterManager's list of modes.
@@ -0,0 +1,24 @@
+package seng202.team10.business;
+
+/**
+ * How far a crash import has got, reported after each chunk is committed.
+ *
+ * @param parsed number of crashes read from the file and passed to the database
+ * @param written number of crashes inserted or changed in the database
+ * @param rejected number of rows skipped because they could not be parsed
+ * @param rowsPerSecond crashes parsed per second since the import started
+ *
+ * @author Team 10
+ */
+public record ImportProgress(int parsed, int written, int rejected, double rowsPerSecond) {
+
+    /**
+     * Describes the progress for display to the user.
+     *
+     * @return summary of the counts and rate
+     */
+    public String describe() {
+        return String.format("%,d read, %,d written, %,d rejected (%,.0f rows/s)",
+                parsed, written, rejected, rowsPerSecond);
+    }
+}
@@ -2,10 +2,10 @@ package seng202.team10.business;
 
 import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import javafx.application.Platform;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.json.simple.JSONArray;
@@ -13,6 +13,7 @@ import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
 import seng202.team10.gui.MainController;
 import seng202.team10.gui.RoutingMenuController;
+import seng202.team10.models.CrashPoint;
 import seng202.team10.models.Location;
 
 
@@ -48,50 +49,61 @@ public class JavaScriptBridge {
     }
 
     /**
-     * Updates the crash data.
+     * Updates the crash data. The crashes matching the filters anywhere on the map are
+     * read and indexed on a database thread, then the clusters and heatmap cells in view
+     * are passed to the map on the JavaFX thread. Refreshing again before this finishes
+     * cancels it in favour of the newer filters. The map is then sent the clusters and
+     * heatmap cells in view as it moves, without reading the database again.
      */
     public void setCrashes() {
-        CrashManager crashData = new CrashManager();
-        List<?> crashList = crashData.getCrashLocations();
-        updateCrashesByJavascript(crashList);
+        MapDataManager.getInstance().loadFilteredCrashesAsync()
+                .thenAcceptAsync(index -> showMapData(), Platform::runLater);
     }
 
 
     /**
     * Updates crash data in a web application using JavaScript.
     *
-    * @param crashList A list of crash data, each element is a HashMap with the following keys:
-    *                  - "latitude" (double): Latitude of the crash location.
-    *                  - "longitude" (double): Longitude of the crash location.
-    *                  - "severity" (int): Severity of the crash.
-    *                  - "crash_year" (int): Year of the crash.
-    *                  - "weather" (String): Weather conditions at the time of the crash.
+    * @param crashList A list of crash points, each with the location, severity,
+    *                  year and weather of the crash.
     *
-    *                   The method generates a JavaScript script to update
-    *                   the client-side crash data representation
-    *                   and executes it using a JavaScript connector
-    *                   provided by the 'MainController' class.
+    *                   The method indexes the crashes with {@link MapDataManager}
+    *                   and passes the clusters and heatmap cells in view to the map
+    *                   using a JavaScript connector provided by the 'MainController'
+    *                   class. They are shown in place of the filtered crashes until
+    *                   the map is refreshed.
     *
     */
-    public static void updateCrashesByJavascript(List<?> crashList) {
-        StringBuilder stringBuilder = new StringBuilder();
-        stringBuilder.append("Promise.resolve().then(function () "
-                + "{resetLayers();}).then(function () {");
-
-        crashList.stream().forEach(crash -> {
-            HashMap crash1 = (HashMap) crash;
-            double latitude = (double) crash1.get("latitude");
-            double longitude = (double) crash1.get("longitude");
-            int severity = (int) crash1.get("severity");
-            String year = Integer.toString((Integer) crash1.get("crash_year"));
-            String weather = (String) crash1.get("weather");
-
-            stringBuilder.append(String.format("addPoint(%f,%f,%d,%s,'%s');",
-                    latitude, longitude, severity, year, weather));
-        });
-
-        stringBuilder.append("}).then(function () {showLayers();});");
-        MainController.javaScriptConnector.call("runDataUpdate", stringBuilder.toString());
+    public static void updateCrashesByJavascript(List<CrashPoint> crashList) {
+        MapDataManager.getInstance().showCrashes(crashList);
+        showMapData();
+    }
+
+    /**
+     * Sends the map the markers for tiles that have come into view, which markers to
+     * drop, and the heatmap cells in the current viewport at the current zoom.
+     * Called by the map whenever it moves.
+     */
+    public void updateMapData() {
+        showMapData();
+    }
+
+    /**
+     * Sets the zoom level clusters and heatmap cells are sent for.
+     *
+     * @param zoom zoom level of the map
+     */
+    public void setMapZoom(double zoom) {
+        MapDataManager.getInstance().setZoom((int) Math.floor(zoom));
+    }
+
+    private static void showMapData() {
+        MapDataManager mapData = MapDataManager.getInstance();
+        MainController.javaScriptConnector.call("updateMarkers",
+                CrashPayload.encodeMarkerUpdate(mapData.getMarkerUpdate()),
+                CrashPayload.weatherNames());
+        MainController.javaScriptConnector.call("updateHeatmap",
+                CrashPayload.encodeHeatmap(mapData.getHeatmapCells(), mapData.getHeatmapMax()));
     }
 
     /**
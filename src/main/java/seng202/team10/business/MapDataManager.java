@@ -0,0 +1,241 @@
+package seng202.team10.business;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+import seng202.team10.models.CrashCluster;
+import seng202.team10.models.CrashPoint;
+import seng202.team10.models.HeatmapCell;
+import seng202.team10.models.Location;
+import seng202.team10.models.MarkerUpdate;
+import seng202.team10.repository.AsyncRepository;
+import seng202.team10.repository.QueryCondition;
+
+/**
+ * Singleton class holding the crashes shown on the map, clustered and gridded for every
+ * zoom level, so the map can be sent just the clusters and heatmap cells in view each
+ * time it moves. The crashes are the ones matching the filters when the map was last
+ * refreshed, anywhere in the country, or a list such as the crashes along a route.
+ *
+ * <p>Markers are sent by map tile. The tiles the map already has are remembered, so
+ * only the tiles entering or leaving the viewport are sent as it moves.</p>
+ *
+ * <p>When the filters change, only the crashes that start or stop matching them are
+ * read from the database, and the clusters and grids are rebuilt from the crashes
+ * already held.</p>
+ *
+ * @author Team 10
+ */
+public class MapDataManager {
+
+    private static MapDataManager mapDataManager;
+    private static final FilteredCrashes NO_CRASHES = new FilteredCrashes(null, Map.of(),
+            new CrashClusterIndex(List.of()));
+    private volatile FilteredCrashes filteredCrashes = NO_CRASHES;
+    private volatile CrashClusterIndex shownIndex = NO_CRASHES.index();
+    private volatile int version;
+    private volatile int zoom;
+    // Tiles the map has been sent markers for, and what they were built from
+    private final Set<Long> sentTiles = new HashSet<>();
+    private CrashClusterIndex sentIndex;
+    private int sentZoom;
+    private int sentVersion = -1;
+
+    /**
+     * Crashes matching a filter condition, by object id, and their index.
+     * A null filter means the crashes must be read again in full.
+     */
+    private record FilteredCrashes(QueryCondition filter, Map<Integer, CrashPoint> crashes,
+                                   CrashClusterIndex index) {
+        boolean isFor(QueryCondition condition) {
+            return filter != null && filter.toString().equals(condition.toString());
+        }
+    }
+
+    private MapDataManager() {
+    }
+
+    /**
+     * Retrieves the singleton MapDataManager instance.
+     *
+     * @return The singleton MapDataManager instance.
+     */
+    public static MapDataManager getInstance() {
+        if (mapDataManager == null) {
+            mapDataManager = new MapDataManager();
+        }
+        return mapDataManager;
+    }
+
+    /**
+     * Indexes the crashes matching the selected filters on a database thread and shows
+     * them on the map, unless they were already indexed for the same filters.
+     *
+     * @return future completed once the crashes are indexed, or cancelled if superseded
+     */
+    public CompletableFuture<CrashClusterIndex> loadFilteredCrashesAsync() {
+        QueryCondition filter = FilterManager.getInstance().getFilterCondition();
+        FilteredCrashes current = filteredCrashes;
+        if (current.isFor(filter)) {
+            shownIndex = current.index();
+            return CompletableFuture.completedFuture(current.index());
+        }
+        int startVersion = version;
+        CrashManager crashManager = new CrashManager();
+        return AsyncRepository.getInstance()
+                .submitLatest("map-crashes", () -> readCrashes(crashManager, current, filter))
+                .thenApply(loaded -> {
+                    // Crashes read while the database was changing are not kept
+                    if (version == startVersion) {
+                        filteredCrashes = loaded;
+                    }
+                    shownIndex = loaded.index();
+                    return loaded.index();
+                });
+    }
+
+    /**
+     * Reads the crashes matching a filter. If crashes matching another filter are
+     * already held, only the crashes matching one filter but not the other are read.
+     *
+     * @param crashManager reads crashes from the database
+     * @param current crashes already held
+     * @param filter condition crashes must match
+     * @return crashes matching the filter
+     */
+    private static FilteredCrashes readCrashes(CrashManager crashManager,
+                                               FilteredCrashes current, QueryCondition filter) {
+        Map<Integer, CrashPoint> crashes;
+        if (current.filter() == null) {
+            crashes = new HashMap<>();
+            try (Stream<CrashPoint> added = crashManager.streamCrashLocations(filter)) {
+                added.forEach(crash -> crashes.put(crash.objectId(), crash));
+            }
+        } else {
+            crashes = new HashMap<>(current.crashes());
+            try (Stream<CrashPoint> removed = crashManager.streamCrashLocations(
+                    current.filter().andNot(filter))) {
+                removed.forEach(crash -> crashes.remove(crash.objectId()));
+            }
+            try (Stream<CrashPoint> added = crashManager.streamCrashLocations(
+                    filter.andNot(current.filter()))) {
+                added.forEach(crash -> crashes.put(crash.objectId(), crash));
+            }
+        }
+        return new FilteredCrashes(filter, crashes,
+                new CrashClusterIndex(new ArrayList<>(crashes.values())));
+    }
+
+    /**
+     * Shows a list of crashes on the map in place of the filtered crashes, until the
+     * map is next refreshed.
+     *
+     * @param crashes crash points to show
+     */
+    public void showCrashes(List<CrashPoint> crashes) {
+        shownIndex = new CrashClusterIndex(crashes);
+    }
+
+    /**
+     * Forgets the filtered crashes, so they are read again in full on the next refresh.
+     * Called when the crashes in the database change.
+     */
+    public void invalidate() {
+        version++;
+        filteredCrashes = NO_CRASHES;
+    }
+
+    /**
+     * Works out how the crash markers on the map must change to show the current viewport
+     * at the current zoom, given the tiles sent by earlier updates. Tiles still in view
+     * are left alone, so a small pan only sends the tiles uncovered at its edge.
+     * Every update returned must be passed to the map, in order.
+     *
+     * @return tiles to remove from and add to the map
+     */
+    public synchronized MarkerUpdate getMarkerUpdate() {
+        CrashClusterIndex index = shownIndex;
+        int currentZoom = zoom;
+        int currentVersion = version;
+        Location[] viewport = getViewport();
+        Map<Long, List<CrashCluster>> inView = index.getClustersByTile(
+                viewport[0].getLatitude(), viewport[0].getLongitude(),
+                viewport[1].getLatitude(), viewport[1].getLongitude(), currentZoom);
+
+        boolean tilesReset = index != sentIndex || currentZoom != sentZoom;
+        boolean crashesChanged = currentVersion != sentVersion;
+        if (tilesReset) {
+            sentTiles.clear();
+        }
+        List<Long> removedTiles = sentTiles.stream()
+                .filter(tile -> !inView.containsKey(tile)).toList();
+        Map<Long, List<CrashCluster>> addedTiles = new LinkedHashMap<>(inView);
+        addedTiles.keySet().removeAll(sentTiles);
+
+        sentTiles.clear();
+        sentTiles.addAll(inView.keySet());
+        sentIndex = index;
+        sentZoom = currentZoom;
+        sentVersion = currentVersion;
+        return new MarkerUpdate(tilesReset, crashesChanged, removedTiles, addedTiles);
+    }
+
+    /**
+     * Gets the heatmap cells in the current viewport at the current zoom.
+     *
+     * @return heatmap cells in view, or every cell if no viewport has been set
+     */
+    public List<HeatmapCell> getHeatmapCells() {
+        Location[] viewport = getViewport();
+        return shownIndex.getHeatmapCells(viewport[0].getLatitude(),
+                viewport[0].getLongitude(), viewport[1].getLatitude(),
+                viewport[1].getLongitude(), zoom);
+    }
+
+    /**
+     * Gets the heatmap weight drawn at full intensity at the current zoom.
+     *
+     * @return severity total drawn at full intensity
+     */
+    public long getHeatmapMax() {
+        return shownIndex.getHeatmapMax(zoom);
+    }
+
+    /**
+     * Gets the number of crashes shown on the map.
+     *
+     * @return number of crashes
+     */
+    public int getCrashCount() {
+        return shownIndex.size();
+    }
+
+    /**
+     * Gets the corners of the viewport, or of the whole world if it has not been set.
+     *
+     * @return south west and north east corners
+     */
+    private Location[] getViewport() {
+        FilterManager filterManager = FilterManager.getInstance();
+        Location min = filterManager.getViewPortMin();
+        Location max = filterManager.getViewPortMax();
+        if (min == null || max == null) {
+            return new Location[] {new Location(-90, -180), new Location(90, 180)};
+        }
+        return new Location[] {min, max};
+    }
+
+    public int getZoom() {
+        return zoom;
+    }
+
+    public void setZoom(int zoom) {
+        this.zoom = zoom;
+    }
+}
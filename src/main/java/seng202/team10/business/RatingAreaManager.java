@@ -1,10 +1,9 @@
 package seng202.team10.business;
 
-import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
 import kotlin.Pair;
 import seng202.team10.models.Location;
+import seng202.team10.repository.QueryCondition;
 import seng202.team10.repository.SqliteQueryBuilder;
 
 /**
@@ -177,6 +176,34 @@ public class RatingAreaManager {
         return boundingWhere;
     }
 
+    /**
+     * Constructs a parameterised condition on the bounding information, in the
+     * same way as {@link #rateAreaHelper()} but with the bounds bound as parameters.
+     *
+     * @return condition limiting crashes to the rated area, or null if no area is set
+     */
+    public QueryCondition rateAreaCondition() {
+        String rtreeFind = "object_id IN (SELECT id FROM rtree_index "
+                + "WHERE minX >= ? AND maxX <= ? AND minY >= ? AND maxY <= ?)";
+        if (boundingBoxMin != null && boundingBoxMax != null) {
+            return QueryCondition.of(rtreeFind,
+                    boundingBoxMin.getLongitude(), boundingBoxMax.getLongitude(),
+                    boundingBoxMin.getLatitude(), boundingBoxMax.getLatitude());
+        } else if (boundingCircleCentre != null) {
+            double longitude = boundingCircleCentre.getLongitude();
+            double latitude = boundingCircleCentre.getLatitude();
+            double radius = boundingCircleRadius;
+
+            // Bounding box to lessen the load, then Pythagoras compared to circle radius
+            return QueryCondition.of(rtreeFind,
+                    longitude - radius, longitude + radius,
+                    latitude - radius, latitude + radius)
+                    .and(QueryCondition.of("(SQRT(POW(? - longitude, 2) "
+                            + "+ POW(? - latitude, 2)) <= ?)", longitude, latitude, radius));
+        }
+        return null;
+    }
+
     /**
     * Executes a database query to calculate the average severity and
     * count of records from a table named "crashes."
@@ -187,43 +214,44 @@ public class RatingAreaManager {
     *       total record count (as an Integer).
     */
     public Pair<Double, Integer> queryHelper(String boundingWhere) {
+        return queryHelper(QueryCondition.of(
+                "object_id IN (SELECT id FROM rtree_index WHERE " + boundingWhere));
+    }
+
+    /**
+     * Executes a database query to calculate the average severity and
+     * count of crashes matching the current filters within the given area.
+     *
+     * @param boundingCondition condition limiting crashes to the rated area
+     * @return A Pair containing the calculated score (as a Double) and the
+     *       total record count (as an Integer).
+     */
+    public Pair<Double, Integer> queryHelper(QueryCondition boundingCondition) {
         String select = "AVG(severity), COUNT()";
         String from = "crashes";
 
-        FilterManager filterManager = FilterManager.getInstance();
-        String filterWhere = filterManager.toString();
-        String[] filterList = filterWhere.split(" AND ");
+        QueryCondition where = FilterManager.getInstance().getFilterCondition()
+                .and(boundingCondition);
 
-        // Takes away the 4 ANDS that make up the viewport
-        // bounds we do not want in our query.
-        String filterWhereWithoutViewport = String.join(" AND ",
-                Arrays.copyOf(filterList, filterList.length - 4));
-
-        String rtreeFind = "object_id IN (SELECT id FROM rtree_index WHERE " + boundingWhere;
-
-        List severityList = SqliteQueryBuilder
+        Pair<Double, Integer> averageCount = SqliteQueryBuilder
                 .create()
                 .select(select)
                 .from(from)
-                .where(filterWhereWithoutViewport + " AND " + rtreeFind)
-                .buildGetter();
-
-        HashMap<String, Object> resultHashMap = (HashMap) severityList.get(0);
+                .where(where)
+                .buildGetter(rs -> new Pair<>(rs.getDouble(1), rs.getInt(2)))
+                .get(0);
 
         // Calculates the score based on the query result
         double score = 0.0;
-        int total = 0;
-        if (resultHashMap.get("AVG(severity)") != null) {
-            double averageSeverity = (double) resultHashMap.get("AVG(severity)");
-            total = (int) resultHashMap.get("COUNT()");
-
-            if (total > 0) {
-                // Actual average severity will range from 1 to 8
-                // Score rating massaged to be out of 10 and in a range from 0 to 10.
-                double scaleFactor = 10.0 / Math.log(11.0);
-                score = Math.log(averageSeverity + 1) * scaleFactor;
-                score = Math.min(10, score);
-            }
+        int total = averageCount.getSecond();
+        if (total > 0) {
+            double averageSeverity = averageCount.getFirst();
+
+            // Actual average severity will range from 1 to 8
+            // Score rating massaged to be out of 10 and in a range from 0 to 10.
+            double scaleFactor = 10.0 / Math.log(11.0);
+            score = Math.log(averageSeverity + 1) * scaleFactor;
+            score = Math.min(10, score);
         }
         return new Pair<>(score, total);
     }
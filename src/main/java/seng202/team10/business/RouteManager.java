@@ -11,8 +11,10 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import javafx.util.Pair;
+import seng202.team10.models.CrashPoint;
 import seng202.team10.models.Location;
 import seng202.team10.models.Review;
+import seng202.team10.repository.QueryCondition;
 import seng202.team10.repository.SqliteQueryBuilder;
 
 
@@ -174,7 +176,7 @@ public class RouteManager {
         double totalDistances = 0;
         double totalDistance = 0;
         Set<Integer> objectIdSet = new HashSet<>();
-        List<HashMap<String, Object>> crashes = new ArrayList<>();
+        List<CrashPoint> crashes = new ArrayList<>();
 
         int j = 0;
         for (int i = 0; i < coordinates.size() - 1; i += 1) {
@@ -187,7 +189,7 @@ public class RouteManager {
                 j++;
             }
 
-            Pair<Double, List<HashMap<String, Object>>> segmentInfo =
+            Pair<Double, List<CrashPoint>> segmentInfo =
                     calculateSegmentInfo(segmentStart, segmentEnd, objectIdSet);
 
             double segmentSeverity = segmentInfo.getKey();
@@ -230,21 +232,17 @@ public class RouteManager {
      * @param objectIdSet  A set containing unique object IDs to prevent duplicate crash entries.
      * @return A Pair containing the total severity within the segment
      *          (as a Double) and a list of crash data
-     *          within the segment (as a List of HashMaps).
+     *          within the segment (as a List of CrashPoints).
      */
-    private static Pair<Double, List<HashMap<String, Object>>> calculateSegmentInfo(
+    private static Pair<Double, List<CrashPoint>> calculateSegmentInfo(
             Location segmentStart, Location segmentEnd, Set<Integer> objectIdSet) {
-        List<?> crashList = boundingBoxSegmentSearch(segmentStart, segmentEnd);
+        List<CrashPoint> crashList = boundingBoxSegmentSearch(segmentStart, segmentEnd);
         double segmentSeverity = 0;
-        List<HashMap<String, Object>> crashes = new ArrayList<>();
-        for (Object severityMap : crashList) {
-            HashMap<String, Object> map = (HashMap<String, Object>) severityMap;
-            int objectId = (int) map.get("object_id");
-            if (!objectIdSet.contains(objectId)) {
-                objectIdSet.add(objectId);
-                crashes.add(map);
-                int currentSeverity = (int) map.get("severity");
-                segmentSeverity += currentSeverity;
+        List<CrashPoint> crashes = new ArrayList<>();
+        for (CrashPoint crash : crashList) {
+            if (objectIdSet.add(crash.objectId())) {
+                crashes.add(crash);
+                segmentSeverity += crash.severity();
             }
         }
         return new Pair<>(segmentSeverity, crashes);
@@ -274,12 +272,12 @@ public class RouteManager {
         return maxWeather;
     }
 
-    private static void updateWeatherMaps(List<HashMap<String, Object>> crashes,
+    private static void updateWeatherMaps(List<CrashPoint> crashes,
                                           Map<String, Integer> weatherSeverityTotal,
                                           Map<String, Integer> weatherTotals) {
-        for (HashMap<String, Object> crash : crashes) {
-            String weather = (String) crash.get("weather");
-            int currentSeverity = (int) crash.get("severity");
+        for (CrashPoint crash : crashes) {
+            String weather = crash.weather().getName();
+            int currentSeverity = crash.severity();
             weatherSeverityTotal.put(weather,
                     weatherSeverityTotal.getOrDefault(weather, 0) + currentSeverity);
             weatherTotals.put(weather,
@@ -324,7 +322,8 @@ public class RouteManager {
      * @param endLocation location the route segment ends at
      * @return double of average severity
      */
-    public static List boundingBoxSegmentSearch(Location startLocation, Location endLocation) {
+    public static List<CrashPoint> boundingBoxSegmentSearch(Location startLocation,
+                                                            Location endLocation) {
         // 100 metres away
         double oneKilometreInDegrees = 0.008;
         double dist = oneKilometreInDegrees * 0.1;
@@ -334,29 +333,21 @@ public class RouteManager {
         double maxLat = Math.max(startLocation.getLatitude(), endLocation.getLatitude()) + dist;
         double maxLong = Math.max(startLocation.getLongitude(), endLocation.getLongitude()) + dist;
 
-        FilterManager filterManager = FilterManager.getInstance();
-        String filterWhere = filterManager.toString();
-        String[] filterList = filterWhere.split(" AND ");
-
-        // 4 ANDS to take away to get rid of the viewport
-        String filterWhereWithoutViewport = String.join(" AND ",
-                Arrays.copyOf(filterList, filterList.length - 4));
+        QueryCondition where = FilterManager.getInstance().getFilterCondition()
+                .and(QueryCondition.of("object_id IN (SELECT id FROM rtree_index "
+                        + "WHERE minX >= ? AND maxX <= ? AND minY >= ? AND maxY <= ?)",
+                        minLong, maxLong, minLat, maxLat));
 
-        String select = "object_id, longitude, latitude, severity, crash_year, weather";
+        String select = CrashManager.CRASH_POINT_COLUMNS;
         String from = "crashes";
-        String where = filterWhereWithoutViewport + " AND "
-                + "object_id IN (SELECT id FROM rtree_index WHERE minX >= " + minLong
-                + " AND maxX <= " + maxLong
-                + " AND minY >= " + minLat
-                + " AND maxY <= " + maxLat + ")";
 
 
-        List<?> severityList = SqliteQueryBuilder
+        List<CrashPoint> severityList = SqliteQueryBuilder
                 .create()
                 .select(select)
                 .from(from)
                 .where(where)
-                .buildGetter();
+                .buildGetter(CrashManager.CRASH_POINT_MAPPER);
 
         return severityList;
     }
@@ -2,10 +2,9 @@ package seng202.team10.gui;
 
 import java.net.URL;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
 import java.util.ResourceBundle;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
@@ -16,11 +15,14 @@ import javafx.scene.control.ComboBox;
 import javafx.scene.control.Label;
 import javafx.scene.control.Tooltip;
 import javafx.scene.layout.AnchorPane;
+import javafx.util.Pair;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import seng202.team10.App;
 import seng202.team10.business.FilterManager;
 import seng202.team10.business.GraphManager;
+import seng202.team10.repository.AsyncRepository;
+import seng202.team10.repository.QueryCondition;
 import seng202.team10.repository.SqliteQueryBuilder;
 
 
@@ -32,6 +34,17 @@ import seng202.team10.repository.SqliteQueryBuilder;
 public class GraphController implements Initializable, MenuController {
 
     private static final Logger log = LogManager.getLogger(App.class);
+    private static final List<Pair<String, String>> VEHICLE_COLUMNS = List.of(
+            new Pair<>("Bicycle", "bicycle_involved"),
+            new Pair<>("Bus", "bus_involved"),
+            new Pair<>("Car", "car_involved"),
+            new Pair<>("Moped", "moped_involved"),
+            new Pair<>("Motorcycle", "motorcycle_involved"),
+            new Pair<>("Parked Vehicle", "parked_vehicle_involved"),
+            new Pair<>("Pedestrian", "pedestrian_involved"),
+            new Pair<>("School Bus", "school_bus_involved"),
+            new Pair<>("Train", "train_involved"),
+            new Pair<>("Truck", "truck_involved"));
 
     private ObservableList<PieChart.Data> pieChartSqlTestData;
     private static String columnOfInterest = "region";
@@ -58,14 +71,30 @@ public class GraphController implements Initializable, MenuController {
     @FXML
     private Label noPieGraphLabel;
 
+    /**
+     * Slices of a pie chart, and whether no crashes were counted for them.
+     */
+    private record PieChartResult(ObservableList<PieChart.Data> slices, boolean noCrashes) {
+    }
+
     @Override
     public void initialize(URL location, ResourceBundle resources) {
         loadManager();
 
         setPieChartDataOptions();
-        pieChartSqlTestData = newPieChartData(columnOfInterest);
-        setPieGraph(pieChartMade, pieChartSqlTestData);
         graphController = this;
+
+        // The first counts are queried on a database thread as updateGraph does
+        String chartData = currentChartData;
+        String column = columnOfInterest;
+        QueryCondition where = getPieChartCondition();
+        AsyncRepository.getInstance()
+                .submitLatest("pie-chart", () -> newPieChartData(chartData, column, where))
+                .thenAcceptAsync(result -> {
+                    pieChartSqlTestData = result.slices();
+                    noCrashes = result.noCrashes();
+                    setPieGraph(pieChartMade, pieChartSqlTestData);
+                }, Platform::runLater);
     }
 
     /**
@@ -173,67 +202,51 @@ public class GraphController implements Initializable, MenuController {
         });
     }
 
-    private List<?> getPieChartData() {
-        String where = FilterManager.getInstance().toString();
-        String[] filterList = where.split(" AND ");
-
-        // Takes away the 4 ANDS that make up the viewport
-        // bounds we do not want in our query.
-        String filtersWithoutViewport = String.join(" AND ",
-                Arrays.copyOf(filterList, filterList.length - 4));
-
-        // Gets the filtering string with just the viewport
-        String viewportWithoutFilters = String.join(" AND ",
-                Arrays.copyOfRange(filterList, filterList.length - 4, filterList.length));
-
-        String finalWhere = "";
+    /**
+     * Builds the condition for the pie chart from the filters and map bounds checkboxes.
+     * Must be called on the JavaFX thread since it reads the checkboxes.
+     *
+     * @return condition limiting the crashes counted
+     */
+    private QueryCondition getPieChartCondition() {
+        FilterManager filterManager = FilterManager.getInstance();
+        QueryCondition where = QueryCondition.empty();
 
         if (filtersCheckBox.isSelected()) {
-            finalWhere += filtersWithoutViewport;
+            where = where.and(filterManager.getFilterCondition());
         }
 
         if (mapBoundsCheckBox.isSelected()) {
-            if (finalWhere.equals("")) {
-                finalWhere += viewportWithoutFilters;
-            } else {
-                finalWhere += " AND " + viewportWithoutFilters;
-            }
-        }
-
-        if (finalWhere.isEmpty()) {
-            return SqliteQueryBuilder.create()
-                    .select(columnOfInterest + ", COUNT(*)")
-                    .from("crashes")
-                    .groupBy(columnOfInterest)
-                    .buildGetter();
-        } else {
-            return SqliteQueryBuilder.create()
-                    .select(columnOfInterest + ", COUNT(*)")
-                    .from("crashes")
-                    .where(finalWhere)
-                    .groupBy(columnOfInterest)
-                    .buildGetter();
+            where = where.and(filterManager.getViewportCondition());
         }
+        return where;
     }
 
-    private PieChart.Data createVehiclePieData(String vehicle, String columnWanted) {
-        columnOfInterest = columnWanted;
-
-        List<?> vehicleList = getPieChartData(); //to hold the result of the sql query
+    private List<Pair<Object, Double>> getPieChartData(String columnOfInterest,
+                                                       QueryCondition where) {
+        // Without a where clause the group by index covers the whole count. With one, walking
+        // that index means a table lookup per row, so group in a temporary b-tree instead.
+        String groupBy = where.isEmpty() ? columnOfInterest : "+" + columnOfInterest;
+
+        return SqliteQueryBuilder.create()
+                .select(columnOfInterest + ", COUNT(*)")
+                .from("crashes")
+                .where(where)
+                .groupBy(groupBy)
+                .buildGetter(rs -> new Pair<>(rs.getObject(1), rs.getDouble(2)));
+    }
 
+    private PieChart.Data createVehiclePieData(String vehicle,
+                                               List<Pair<Object, Double>> vehicleList) {
         ArrayList<String> sliceNames = new ArrayList<>();
         ArrayList<Double> sliceCounts = new ArrayList<>();
 
         //extracting slice value and count
-        for (Object hash : vehicleList) {
-            HashMap<Object, Object> vehicleHashMap = (HashMap<Object, Object>) hash;
-            Object column = vehicleHashMap.get(columnOfInterest);
-            double count = ((Number) vehicleHashMap.get("COUNT(*)")).doubleValue();
+        for (Pair<Object, Double> slice : vehicleList) {
+            Object column = slice.getKey();
+            double count = slice.getValue();
             sliceNames.add(column.toString());
             sliceCounts.add(count);
-            if (count > 0) {
-                noCrashes = false;
-            }
         }
 
         //adding pie chart data only if the vehicle was involved i.e. sliceName = 1
@@ -250,61 +263,52 @@ public class GraphController implements Initializable, MenuController {
         return new PieChart.Data("", 0); //in case there is no vehicle involved
     }
 
-    private ObservableList<PieChart.Data> newPieChartVehicleData() {
+    private PieChartResult newPieChartVehicleData(QueryCondition where) {
         ObservableList<PieChart.Data> result = FXCollections.observableArrayList();
-        noCrashes = true;
+        boolean noneCounted = true;
 
         //avoid complex SQL query by creating PieChart.Data elements
         // by vehicle type to add to result
-        PieChart.Data bikeData = createVehiclePieData("Bicycle", "bicycle_involved");
-        PieChart.Data busData = createVehiclePieData("Bus", "bus_involved");
-        PieChart.Data carData = createVehiclePieData("Car", "car_involved");
-        PieChart.Data mopedData = createVehiclePieData("Moped", "moped_involved");
-        PieChart.Data motorcycleData = createVehiclePieData("Motorcycle", "motorcycle_involved");
-        PieChart.Data parkedData = createVehiclePieData("Parked Vehicle",
-                "parked_vehicle_involved");
-        PieChart.Data pedestrianData = createVehiclePieData("Pedestrian", "pedestrian_involved");
-        PieChart.Data schoolBusData = createVehiclePieData("School Bus", "school_bus_involved");
-        PieChart.Data trainData = createVehiclePieData("Train", "train_involved");
-        PieChart.Data truckData = createVehiclePieData("Truck", "truck_involved");
-
-        result.add(bikeData);
-        result.add(busData);
-        result.add(carData);
-        result.add(mopedData);
-        result.add(motorcycleData);
-        result.add(parkedData);
-        result.add(pedestrianData);
-        result.add(schoolBusData);
-        result.add(trainData);
-        result.add(truckData);
-
-        if (result.size() == 0 || noCrashes == true) {
-            toggleNoPieGraph();
+        for (Pair<String, String> vehicle : VEHICLE_COLUMNS) {
+            //to hold the result of the sql query
+            List<Pair<Object, Double>> vehicleList = getPieChartData(vehicle.getValue(), where);
+            if (vehicleList.stream().anyMatch(slice -> slice.getValue() > 0)) {
+                noneCounted = false;
+            }
+            result.add(createVehiclePieData(vehicle.getKey(), vehicleList));
         }
 
-        return result;
+        return new PieChartResult(result, noneCounted);
     }
 
-    private ObservableList<PieChart.Data> newPieChartData(String columnOfInterest) {
+    /**
+     * Queries the counts for a pie chart. Only reads the database and its parameters
+     * and builds the slices, without touching any fields, so it can run off the JavaFX
+     * thread; {@link #showPieChartData} shows the result.
+     *
+     * @param chartData data option the chart is for, such as "Region"
+     * @param columnOfInterest column to count crashes by
+     * @param where condition limiting the crashes counted
+     * @return slices of the pie chart, and whether no crashes were counted
+     */
+    private PieChartResult newPieChartData(String chartData, String columnOfInterest,
+                                           QueryCondition where) {
         ObservableList<PieChart.Data> result = FXCollections.observableArrayList();
 
-        if (currentChartData.equals("Vehicle Type")) {
-            result = newPieChartVehicleData();
-            return result;
+        if (chartData.equals("Vehicle Type")) {
+            return newPieChartVehicleData(where);
         }
 
         //querying the database for the column and count
-        List<?> dbList = getPieChartData();
+        List<Pair<Object, Double>> dbList = getPieChartData(columnOfInterest, where);
 
         ArrayList<String> sliceNames = new ArrayList<>();
         ArrayList<Double> sliceCounts = new ArrayList<>();
 
         //looping through to extract slice name and corresponding count
-        for (Object hash : dbList) {
-            HashMap<Object, Object> hashMap = (HashMap<Object, Object>) hash;
-            Object column = hashMap.get(columnOfInterest);
-            double count = ((Number) hashMap.get("COUNT(*)")).doubleValue();
+        for (Pair<Object, Double> slice : dbList) {
+            Object column = slice.getKey();
+            double count = slice.getValue();
 
             //creating more informative slice names
             if (columnOfInterest.equals("severity")) {
@@ -341,11 +345,7 @@ public class GraphController implements Initializable, MenuController {
             result.add(new PieChart.Data(sliceName, sliceCounts.get(i)));
         }
 
-        if (result.size() == 0) {
-            toggleNoPieGraph();
-        }
-
-        return result;
+        return new PieChartResult(result, result.isEmpty());
     }
 
 
@@ -407,14 +407,30 @@ public class GraphController implements Initializable, MenuController {
     }
 
     /**
-     * Updates the graph showing with the selected columnOfInterest.
+     * Updates the graph showing with the selected columnOfInterest. The counts are
+     * queried on a database thread, and a newer update cancels one still running.
      */
     @FXML
     public void updateGraph() {
-        ObservableList<PieChart.Data> newPieData = newPieChartData(columnOfInterest);
-
         currentChartData = (String) chartDataComboBox.getValue();
+        String chartData = currentChartData;
+        String column = columnOfInterest;
+        QueryCondition where = getPieChartCondition();
+
+        AsyncRepository.getInstance()
+                .submitLatest("pie-chart", () -> newPieChartData(chartData, column, where))
+                .thenAcceptAsync(this::showPieChartData, Platform::runLater);
+    }
 
+    /**
+     * Shows new pie chart data if it differs from what is showing.
+     * Must be called on the JavaFX thread.
+     *
+     * @param pieChartResult slices of the pie chart, and whether no crashes were counted
+     */
+    private void showPieChartData(PieChartResult pieChartResult) {
+        ObservableList<PieChart.Data> newPieData = pieChartResult.slices();
+        noCrashes = pieChartResult.noCrashes();
         ObservableList<PieChart.Data> pieChartDataInController = graphController
                 .pieChartMade.getData();
         if (!arePieChartDataListsIdentical(newPieData, pieChartDataInController)) {
@@ -2,12 +2,18 @@ package seng202.team10.gui;
 
 import java.io.File;
 import java.net.URL;
+import java.util.List;
 import java.util.ResourceBundle;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
 import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.Label;
 import javafx.stage.FileChooser;
+import seng202.team10.business.CrashImportTask;
+import seng202.team10.business.ImportProgress;
 import seng202.team10.exceptions.DataImportException;
+import seng202.team10.io.CrashCsvImporter;
 import seng202.team10.repository.DatabaseManager;
 
 /**
@@ -23,42 +29,106 @@ public class ImportMenuController implements Initializable {
     @FXML
     private Button resetDataButton;
 
+    @FXML
+    private Label importStatusLabel;
+
+    @FXML
+    private CheckBox updateExistingCheckBox;
+
     private PopOverController popOver = new PopOverController();
 
+    // Kept across controllers, as the menu is reloaded each time it is opened
+    private static CrashImportTask importTask;
+
 
 
     @Override
     public void initialize(URL url, ResourceBundle resourceBundle) {
-
+        if (importTask != null && importTask.isRunning()) {
+            watchImport(importTask);
+        }
     }
 
     /**
-     * Opens the window to choose a file.
+     * Opens the window to choose a file and imports it in the background, or cancels
+     * the import if one is already running. Crashes are added under new ids unless the
+     * update existing checkbox is ticked, which updates crashes with the same OBJECTID.
      * Has correct error handling
      *
      */
     public void openFileChooserDialog() {
+        if (importTask != null && importTask.isRunning()) {
+            // Let the import stop between chunks rather than interrupting a write
+            importTask.cancel(false);
+            return;
+        }
+
         FileChooser fileChooser = new FileChooser();
-        File file = fileChooser.showOpenDialog(importDataButton.getScene().getWindow());
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter(
+                "Crash data (*.csv, *.csv.gz, *.zip)", "*.csv", "*.gz", "*.zip"));
+        List<File> files = fileChooser.showOpenMultipleDialog(
+                importDataButton.getScene().getWindow());
 
-        if (file == null) {
+        if (files == null || files.isEmpty()) {
             // User canceled the file chooser, exit the method.
             return;
         }
 
-        if (!file.getName().endsWith(".csv")) {
-            popOver.showNotificationOnButtonPress(importDataButton, "Needs to be a CSV File");
+        if (!files.stream().allMatch(CrashCsvImporter::isSupported)) {
+            popOver.showNotificationOnButtonPress(importDataButton,
+                    "Needs to be a CSV, gz or zip File");
             return;
         }
 
-        try {
-            DatabaseManager.getInstance().importFile(file);
-        } catch (DataImportException e) {
-            popOver.showNotificationOnButtonPress(importDataButton, "Import Error");
-        } catch (Exception e) {
-            // Catching other unexpected exceptions and notifying the user.
-            popOver.showNotificationOnButtonPress(resetDataButton, String.valueOf(e));
-        }
+        CrashImportTask task = new CrashImportTask(files, updateExistingCheckBox.isSelected());
+        importTask = task;
+        watchImport(task);
+
+        Thread thread = new Thread(task, "crash-import");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Shows an import's progress in this menu and restores the controls when it stops.
+     *
+     * @param task running import
+     */
+    private void watchImport(CrashImportTask task) {
+        importStatusLabel.textProperty().bind(task.messageProperty());
+        importDataButton.setText("Cancel");
+        resetDataButton.setDisable(true);
+        updateExistingCheckBox.setDisable(true);
+
+        task.setOnSucceeded(event -> finishImport(task.getMessage()));
+        task.setOnCancelled(event -> {
+            ImportProgress progress = task.getValue();
+            finishImport(progress == null ? "Import cancelled"
+                    : "Import cancelled after " + progress.describe());
+        });
+        task.setOnFailed(event -> {
+            finishImport("Import failed");
+            if (task.getException() instanceof DataImportException) {
+                popOver.showNotificationOnButtonPress(importDataButton, "Import Error");
+            } else {
+                // Catching other unexpected exceptions and notifying the user.
+                popOver.showNotificationOnButtonPress(resetDataButton,
+                        String.valueOf(task.getException()));
+            }
+        });
+    }
+
+    /**
+     * Restores the import controls once an import has stopped.
+     *
+     * @param status final status to show
+     */
+    private void finishImport(String status) {
+        importStatusLabel.textProperty().unbind();
+        importStatusLabel.setText(status);
+        importDataButton.setText("Import");
+        resetDataButton.setDisable(false);
+        updateExistingCheckBox.setDisable(false);
     }
 
     /**
@@ -8,6 +8,8 @@ import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.stage.Screen;
 import javafx.stage.Stage;
+import seng202.team10.repository.AsyncRepository;
+import seng202.team10.repository.DatabaseManager;
 
 
 /**
@@ -42,6 +44,16 @@ public class MainWindow extends Application {
         primaryStage.show();
     }
 
+    /**
+     * Cancels outstanding queries and releases the pooled database connections
+     * when the application closes.
+     */
+    @Override
+    public void stop() {
+        AsyncRepository.getInstance().shutdown();
+        DatabaseManager.getInstance().close();
+    }
+
 
     /**
      * Launches the FXML application, this must be called from
@@ -1,5 +1,6 @@
 package seng202.team10.gui;
 
+import javafx.application.Platform;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.scene.control.Button;
@@ -11,6 +12,8 @@ import org.apache.logging.log4j.Logger;
 import seng202.team10.business.RatingAreaManager;
 import seng202.team10.models.GeoLocator;
 import seng202.team10.models.Location;
+import seng202.team10.repository.AsyncRepository;
+import seng202.team10.repository.QueryCondition;
 
 
 /**
@@ -49,22 +52,29 @@ public class RatingAreaMenuController implements MenuController {
     }
 
     /**
-     * rates the area based on severity and crashes.
+     * rates the area based on severity and crashes. The rating is queried on a database
+     * thread, and rating again cancels a query that is still running.
      */
     public void rateArea() {
         RatingAreaManager ratingAreaManager = RatingAreaManager.getInstance();
-        String boundingWhere = ratingAreaManager.rateAreaHelper();
+        QueryCondition boundingCondition = ratingAreaManager.rateAreaCondition();
 
         // If a bounding area exists, then query in to get rating
-        if (boundingWhere != null) {
-
-            double score = ratingAreaManager.queryHelper(boundingWhere).getFirst();
-            int total = ratingAreaManager.queryHelper(boundingWhere).getSecond();
-            // Changes the visual cues with colour of area on map and text within info box.
-            MainController.javaScriptConnector.call("changeDrawingColourToRating", score);
-            ratingAreaText.setText("Danger: "
-                    + String.format("%.2f", score) + " / 10");
-            numCrashesAreaLabel.setText("Number of crashes in area: " + total);
+        if (boundingCondition != null) {
+            AsyncRepository.getInstance()
+                    .submitLatest("area-rating",
+                            () -> ratingAreaManager.queryHelper(boundingCondition))
+                    .thenAcceptAsync(scoreTotal -> {
+                        double score = scoreTotal.getFirst();
+                        int total = scoreTotal.getSecond();
+                        // Changes the visual cues with colour of area on map and text
+                        // within info box.
+                        MainController.javaScriptConnector.call("changeDrawingColourToRating",
+                                score);
+                        ratingAreaText.setText("Danger: "
+                                + String.format("%.2f", score) + " / 10");
+                        numCrashesAreaLabel.setText("Number of crashes in area: " + total);
+                    }, Platform::runLater);
         } else {
             popOverController.showNotificationOnButtonPress(rateAreaButton,
                     "No bounding area drawn!"
@@ -12,6 +12,7 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.ResourceBundle;
 import javafx.animation.FadeTransition;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.event.ActionEvent;
@@ -35,11 +36,13 @@ import seng202.team10.business.FilterManager;
 import seng202.team10.business.JavaScriptBridge;
 import seng202.team10.business.RouteManager;
 import seng202.team10.business.SettingsManager;
+import seng202.team10.models.CrashPoint;
 import seng202.team10.models.Favourite;
 import seng202.team10.models.GeoLocator;
 import seng202.team10.models.Location;
 import seng202.team10.models.Review;
 import seng202.team10.models.Route;
+import seng202.team10.repository.AsyncRepository;
 import seng202.team10.repository.SqliteQueryBuilder;
 
 
@@ -332,7 +335,7 @@ public class RoutingMenuController implements Initializable, MenuController {
             List<?> favouriteList = SqliteQueryBuilder.create()
                     .select("*")
                     .from("favourites")
-                    .where("route_name = \"" + routeName + "\"")
+                    .where("route_name = ?", routeName)
                     .buildGetter();
             log.info(favouriteList.size());
             Favourite favourite = (Favourite) favouriteList.get(0);
@@ -367,7 +370,7 @@ public class RoutingMenuController implements Initializable, MenuController {
             int selectedStopIndex = favouritesListView.getSelectionModel().getSelectedIndex();
             String name = favouritesListView.getSelectionModel().getSelectedItem();
             SqliteQueryBuilder.create().delete("favourites")
-                    .where("route_name = \"" + name + "\"").buildDeleter();
+                    .where("route_name = ?", name).buildDeleter();
             favouriteStrings.remove(selectedStopIndex);
         } else {
             favouriteStrings.remove(stopStrings.size() - 1);
@@ -417,7 +420,7 @@ public class RoutingMenuController implements Initializable, MenuController {
      *
      * @param crashes A list of crash data to update.
      */
-    public static void updateCrashes(List<?> crashes) {
+    public static void updateCrashes(List<CrashPoint> crashes) {
         JavaScriptBridge.updateCrashesByJavascript(crashes);
         if (SettingsManager.getInstance().getCurrentView().equals("None")) {
             SettingsManager.getInstance().setCurrentView("Crash Locations");
@@ -466,6 +469,8 @@ public class RoutingMenuController implements Initializable, MenuController {
     /**
      * Takes the list of coordinates stored in JavaScriptBridge and updates the rating shown
      * on the GUI's ratingText label through getting the overlapping points of each segment.
+     * The segments are queried on a database thread, and a newer update cancels one that
+     * is still running.
      */
     public static void ratingUpdate() {
         try {
@@ -475,9 +480,14 @@ public class RoutingMenuController implements Initializable, MenuController {
             List<Double> distances =
                     JavaScriptBridge.getDistancesMap().get(JavaScriptBridge.getIndex());
             if (coordinates != null && !coordinates.isEmpty()) {
-                Review review = getOverlappingPoints(coordinates, roads, distances);
-                updateCrashes(review.crashes);
-                MainController.javaScriptConnector.call("updateReviewContent", review.toString());
+                AsyncRepository.getInstance()
+                        .submitLatest("route-rating",
+                                () -> getOverlappingPoints(coordinates, roads, distances))
+                        .thenAcceptAsync(review -> {
+                            updateCrashes(review.crashes);
+                            MainController.javaScriptConnector.call("updateReviewContent",
+                                    review.toString());
+                        }, Platform::runLater);
 
             } else {
                 log.info("No coordinates available for routeId: " + JavaScriptBridge.getIndex());
@@ -491,12 +501,12 @@ public class RoutingMenuController implements Initializable, MenuController {
      * Calls the JS function, removeRoute.
      * When the corresponding button is pressed in the
      * GUI, this method is called and
-     * the route is removed
+     * the route and the crashes along it are removed
      */
     @FXML
     private void removeRoute() {
         MainController.javaScriptConnector.call("removeRoute");
-        MainController.javaScriptConnector.call("resetLayers");
+        JavaScriptBridge.updateCrashesByJavascript(List.of());
         removeRoute.setDisable(true);
 
     }
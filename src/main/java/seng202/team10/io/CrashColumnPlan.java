@@ -0,0 +1,162 @@
+package seng202.team10.io;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import seng202.team10.exceptions.DataImportException;
+import seng202.team10.models.Crash;
+
+/**
+ * Maps the columns of a crash CSV file to Crash fields by header name rather than position,
+ * so exports with reordered or extra columns are read correctly. The header is resolved
+ * once into the index of each field and the parser that sets it; each row is then
+ * converted by indexing straight into it with no name lookups.
+ *
+ * @author Team 10
+ */
+public class CrashColumnPlan {
+
+    /**
+     * Parses a field's value from the CSV and sets it on a crash builder.
+     */
+    @FunctionalInterface
+    private interface FieldParser {
+        void parse(Crash.Builder builder, String value);
+    }
+
+    /**
+     * A CSV column read into a crash and the parser for its values.
+     */
+    private record Column(String header, FieldParser parser) {
+    }
+
+    private static final List<Column> COLUMNS = List.of(
+            new Column("OBJECTID", (builder, value) -> builder.id(toInt(value))),
+            new Column("bicycle", (builder, value) -> builder.bicycleInvolved(toFlag(value))),
+            new Column("bus", (builder, value) -> builder.busInvolved(toFlag(value))),
+            new Column("carStationWagon", (builder, value) -> builder.carInvolved(toFlag(value))),
+            new Column("crashLocation1", Crash.Builder::location1),
+            new Column("crashLocation2", Crash.Builder::location2),
+            new Column("crashSeverity", Crash.Builder::severity),
+            new Column("crashYear", (builder, value) -> builder.year(toInt(value))),
+            new Column("holiday", (builder, value) -> builder.holiday(!value.isEmpty())),
+            new Column("moped", (builder, value) -> builder.mopedInvolved(toFlag(value))),
+            new Column("motorcycle",
+                    (builder, value) -> builder.motorcycleInvolved(toFlag(value))),
+            new Column("parkedVehicle",
+                    (builder, value) -> builder.parkedVehicleInvolved(toFlag(value))),
+            new Column("pedestrian",
+                    (builder, value) -> builder.pedestrianInvolved(toFlag(value))),
+            new Column("region", Crash.Builder::region),
+            new Column("schoolBus", (builder, value) -> builder.schoolBusInvolved(toFlag(value))),
+            new Column("speedLimit", (builder, value) -> builder.speedLimit(toInt(value))),
+            new Column("train", (builder, value) -> builder.trainInvolved(toFlag(value))),
+            new Column("truck", (builder, value) -> builder.truckInvolved(toFlag(value))),
+            new Column("weatherA", Crash.Builder::weather),
+            new Column("lat", (builder, value) -> builder.latitude(Float.parseFloat(value))),
+            new Column("lng", (builder, value) -> builder.longitude(Float.parseFloat(value))));
+
+    private final int[] indexes;
+    private final FieldParser[] parsers;
+    private final int minimumRowLength;
+
+    private CrashColumnPlan(int[] indexes, FieldParser[] parsers) {
+        this.indexes = indexes;
+        this.parsers = parsers;
+        int maxIndex = 0;
+        for (int index : indexes) {
+            maxIndex = Math.max(maxIndex, index);
+        }
+        this.minimumRowLength = maxIndex + 1;
+    }
+
+    /**
+     * Resolves a header row into a column plan.
+     *
+     * @param header column names from the first row of the CSV file
+     * @return plan reading each crash field from its column
+     * @throws DataImportException if any required column is missing from the header
+     */
+    public static CrashColumnPlan fromHeader(String[] header) throws DataImportException {
+        Map<String, Integer> positions = new HashMap<>();
+        for (int i = 0; i < header.length; i++) {
+            // Files saved by Excel start with a byte order mark
+            String name = header[i].replace("\uFEFF", "").trim();
+            positions.putIfAbsent(name, i);
+        }
+
+        int[] indexes = new int[COLUMNS.size()];
+        FieldParser[] parsers = new FieldParser[COLUMNS.size()];
+        List<String> missing = new ArrayList<>();
+        for (int i = 0; i < COLUMNS.size(); i++) {
+            Column column = COLUMNS.get(i);
+            Integer position = positions.get(column.header());
+            if (position == null) {
+                missing.add(column.header());
+            } else {
+                indexes[i] = position;
+                parsers[i] = column.parser();
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            throw new DataImportException("CSV file is missing required columns: "
+                    + String.join(", ", missing));
+        }
+        return new CrashColumnPlan(indexes, parsers);
+    }
+
+    /**
+     * Converts a row of the CSV file into a crash.
+     *
+     * @param row values of one row of the CSV file
+     * @return crash read from the row
+     * @throws NumberFormatException if a numeric column holds something else
+     * @throws IllegalArgumentException if the row has fewer columns than the plan reads
+     */
+    public Crash toCrash(String[] row) {
+        if (row.length < minimumRowLength) {
+            throw new IllegalArgumentException("Row has " + row.length + " columns, expected "
+                    + minimumRowLength);
+        }
+        Crash.Builder builder = new Crash.Builder(0);
+        for (int i = 0; i < indexes.length; i++) {
+            parsers[i].parse(builder, row[indexes[i]]);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Checks whether a row has a value in its OBJECTID column.
+     *
+     * @param row values of one row of the CSV file
+     * @return true if the row's OBJECTID is present and not empty
+     */
+    public boolean hasObjectId(String[] row) {
+        // OBJECTID is always the first of the columns read
+        return indexes[0] < row.length && !row[indexes[0]].isEmpty();
+    }
+
+    /**
+     * Gets the column each required header was found at, in the order they are read.
+     *
+     * @return map of header name to column index
+     */
+    public Map<String, Integer> getColumnIndexes() {
+        Map<String, Integer> columnIndexes = new LinkedHashMap<>();
+        for (int i = 0; i < COLUMNS.size(); i++) {
+            columnIndexes.put(COLUMNS.get(i).header(), indexes[i]);
+        }
+        return columnIndexes;
+    }
+
+    private static int toInt(String value) {
+        return value.isEmpty() ? 0 : Integer.parseInt(value);
+    }
+
+    private static boolean toFlag(String value) {
+        return toInt(value) > 0;
+    }
+}
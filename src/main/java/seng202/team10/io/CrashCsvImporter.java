@@ -3,12 +3,30 @@ package seng202.team10.io;
 
 import com.opencsv.CSVReader;
 import com.opencsv.exceptions.CsvValidationException;
+import java.io.BufferedInputStream;
 import java.io.File;
-import java.io.FileReader;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Objects;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import seng202.team10.exceptions.DataImportException;
@@ -23,10 +41,38 @@ import seng202.team10.models.Crash;
 
 public class CrashCsvImporter {
 
+    /**
+     * Version of the mapping from CSV rows to crashes, recorded in snapshots made from
+     * parsed files. Must be increased whenever a change here would read a file differently.
+     */
+    public static final int PARSER_VERSION = 1;
     private static final Logger log = LogManager.getLogger(CrashCsvImporter.class);
+    private static final int DEFAULT_CHUNK_SIZE = 5000;
+    private static final int READ_BUFFER_SIZE = 1 << 16;
+    private static final Future<List<Crash>> END_OF_FILE =
+            CompletableFuture.completedFuture(List.of());
+    private final RejectedRowLog rejectedRows;
+
+    /**
+     * Creates an importer that counts rejected rows without saving them.
+     */
+    public CrashCsvImporter() {
+        this(new RejectedRowLog());
+    }
+
+    /**
+     * Creates an importer that records rejected rows in the given log.
+     *
+     * @param rejectedRows log to record rows that cannot be imported in
+     */
+    public CrashCsvImporter(RejectedRowLog rejectedRows) {
+        this.rejectedRows = rejectedRows;
+    }
 
     /**
      * List of all the crashes as Point objects from the given file object.
+     * Holds every crash in memory, so large files should be read with
+     * {@link #readCrashesInChunks(File, int, Consumer)} instead.
      *
      * @param file a file containing the crash data
      * @return points list of all crashes from the given file
@@ -34,96 +80,342 @@ public class CrashCsvImporter {
      */
     public List<Crash> crashListFromFile(File file) throws DataImportException {
         List<Crash> pointList = new ArrayList<Crash>();
+        readCrashesInChunks(file, DEFAULT_CHUNK_SIZE, pointList::addAll);
+        return pointList;
+    }
 
-        try (FileReader reader = new FileReader(file)) {
-            try (CSVReader csvReader = new CSVReader(reader)) {
-                csvReader.skip(1);
+    /**
+     * Reads the crashes from the given file in chunks, passing each chunk to the consumer
+     * before reading the next. Only one chunk is held at a time, so memory use does not
+     * grow with the size of the file.
+     *
+     * @param file a file containing the crash data
+     * @param chunkSize maximum number of crashes in each chunk
+     * @param chunkConsumer called with each chunk of crashes in file order
+     * @return number of crashes read
+     * @throws DataImportException in case of CSV validation error or IO error
+     */
+    public int readCrashesInChunks(File file, int chunkSize, Consumer<List<Crash>> chunkConsumer)
+            throws DataImportException {
+        AtomicInteger total = new AtomicInteger();
+        try {
+            forEachCsv(file, (source, csvReader) -> {
+                CrashColumnPlan plan = readColumnPlan(csvReader);
+                List<Crash> chunk = new ArrayList<>(chunkSize);
+                long record = 0;
                 String[] line;
                 while ((line = csvReader.readNext()) != null) {
-                    if (!Objects.equals(line[0], "")) {
-                        Crash currentPoint = crashFromString(line);
-                        if (currentPoint != null) {
-                            pointList.add(currentPoint);
-                        }
+                    Crash currentPoint = crashFromString(plan, source, ++record, line);
+                    if (currentPoint != null) {
+                        chunk.add(currentPoint);
+                    }
+                    if (chunk.size() >= chunkSize) {
+                        total.addAndGet(chunk.size());
+                        chunkConsumer.accept(chunk);
+                        chunk = new ArrayList<>(chunkSize);
                     }
                 }
-                return pointList;
-            } catch (CsvValidationException e) {
-                log.error(e);
-                throw new DataImportException("Invalid CSV format.");
-            }
+                if (!chunk.isEmpty()) {
+                    total.addAndGet(chunk.size());
+                    chunkConsumer.accept(chunk);
+                }
+            });
+        } catch (CsvValidationException e) {
+            log.error(e);
+            throw new DataImportException("Invalid CSV format.");
         } catch (IOException e) {
             log.error(e);
             throw new DataImportException("Error reading the file.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DataImportException("Import was interrupted.");
+        }
+        return total.get();
+    }
+
+
+    /**
+     * Reads the crashes from the given file with a pipeline of threads. A reader thread
+     * splits the file into blocks of lines, a pool of parser threads turns each block
+     * into crashes, and the calling thread passes the parsed chunks to the consumer in
+     * file order. Bounded queues between the stages stop the reader and parsers from
+     * running ahead of the consumer, so memory use stays bounded.
+     *
+     * @param file a file containing the crash data
+     * @param chunkSize maximum number of lines in each chunk
+     * @param parserThreads number of threads parsing lines into crashes
+     * @param chunkConsumer called on the calling thread with each chunk of crashes in file order
+     * @return number of crashes read
+     * @throws DataImportException in case of CSV validation error, IO error or interruption
+     */
+    public int readCrashesInParallel(File file, int chunkSize, int parserThreads,
+                                     Consumer<List<Crash>> chunkConsumer)
+            throws DataImportException {
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService parsers = Executors.newFixedThreadPool(parserThreads, runnable -> {
+            Thread thread = new Thread(runnable, "csv-parser-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        BlockingQueue<Future<List<Crash>>> parsed = new ArrayBlockingQueue<>(parserThreads * 2);
+        AtomicReference<DataImportException> readError = new AtomicReference<>();
+
+        Thread readerThread = new Thread(() -> {
+            try {
+                forEachCsv(file, (source, csvReader) -> {
+                    CrashColumnPlan plan = readColumnPlan(csvReader);
+                    List<String[]> block = new ArrayList<>(chunkSize);
+                    long firstRecord = 1;
+                    String[] line;
+                    while ((line = csvReader.readNext()) != null) {
+                        block.add(line);
+                        if (block.size() >= chunkSize) {
+                            List<String[]> lines = block;
+                            long first = firstRecord;
+                            parsed.put(parsers.submit(
+                                    () -> crashesFromLines(plan, source, first, lines)));
+                            firstRecord += lines.size();
+                            block = new ArrayList<>(chunkSize);
+                        }
+                    }
+                    if (!block.isEmpty()) {
+                        List<String[]> lines = block;
+                        long first = firstRecord;
+                        parsed.put(parsers.submit(
+                                () -> crashesFromLines(plan, source, first, lines)));
+                    }
+                });
+            } catch (DataImportException e) {
+                readError.set(e);
+            } catch (CsvValidationException e) {
+                log.error(e);
+                readError.set(new DataImportException("Invalid CSV format."));
+            } catch (IOException e) {
+                log.error(e);
+                readError.set(new DataImportException("Error reading the file."));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                try {
+                    parsed.put(END_OF_FILE);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, "csv-reader");
+        readerThread.setDaemon(true);
+        readerThread.start();
+
+        int total = 0;
+        try {
+            Future<List<Crash>> next;
+            while ((next = parsed.take()) != END_OF_FILE) {
+                List<Crash> chunk = next.get();
+                total += chunk.size();
+                chunkConsumer.accept(chunk);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DataImportException("Import was interrupted.");
+        } catch (ExecutionException e) {
+            log.error(e.getCause());
+            throw new DataImportException("Error parsing the file.");
+        } finally {
+            // Stops the reader and parsers early if the import failed
+            readerThread.interrupt();
+            parsers.shutdownNow();
+        }
+
+        if (readError.get() != null) {
+            throw readError.get();
+        }
+        return total;
+    }
+
+    /**
+     * Checks whether a file is one the importer can read: a CSV file, a gzip
+     * compressed CSV file or a zip archive of CSV files.
+     *
+     * @param file file to check
+     * @return true if the file's extension is supported
+     */
+    public static boolean isSupported(File file) {
+        String name = file.getName().toLowerCase(Locale.ROOT);
+        return name.endsWith(".csv") || name.endsWith(".gz") || name.endsWith(".zip");
+    }
+
+    /**
+     * Expands import sources into the files to read, replacing each directory with
+     * the supported files directly inside it in name order.
+     *
+     * @param sources files and directories chosen for import
+     * @return supported files to import, in order
+     * @throws DataImportException if a source does not exist or is not supported
+     */
+    public static List<File> expandSources(List<File> sources) throws DataImportException {
+        List<File> files = new ArrayList<>();
+        for (File source : sources) {
+            if (source == null || !source.exists()) {
+                throw new DataImportException("File not found or invalid.");
+            }
+            if (source.isDirectory()) {
+                File[] children = source.listFiles(child -> child.isFile() && isSupported(child));
+                if (children != null) {
+                    Arrays.sort(children);
+                    files.addAll(Arrays.asList(children));
+                }
+            } else if (isSupported(source)) {
+                files.add(source);
+            } else {
+                throw new DataImportException(source.getName() + " is not a CSV, gz or zip file.");
+            }
         }
+        return files;
     }
 
+    /**
+     * Reads a CSV file, a gzip compressed CSV file or every CSV file in a zip archive,
+     * decompressing as it reads so nothing is extracted to disk.
+     *
+     * @param file file to read
+     * @param body reads one CSV file, called once for each
+     * @throws DataImportException if a zip archive has no CSV files, or from the body
+     */
+    private void forEachCsv(File file, CsvBody body) throws DataImportException,
+            CsvValidationException, IOException, InterruptedException {
+        String name = file.getName().toLowerCase(Locale.ROOT);
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file),
+                READ_BUFFER_SIZE)) {
+            if (name.endsWith(".zip")) {
+                readZipEntries(file, in, body);
+            } else if (name.endsWith(".gz")) {
+                try (InputStream gzip = new GZIPInputStream(in, READ_BUFFER_SIZE)) {
+                    body.read(file.getName(), new CSVReader(new InputStreamReader(gzip,
+                            StandardCharsets.UTF_8)));
+                }
+            } else {
+                body.read(file.getName(), new CSVReader(new InputStreamReader(in,
+                        StandardCharsets.UTF_8)));
+            }
+        }
+    }
 
-    private int changeEmptyToZero(String string) {
-        if (string != "" && string != null) {
-            return Integer.parseInt(string);
-        } else {
-            return 0;
+    private void readZipEntries(File file, InputStream in, CsvBody body)
+            throws DataImportException, CsvValidationException, IOException,
+            InterruptedException {
+        ZipInputStream zip = new ZipInputStream(in, StandardCharsets.UTF_8);
+        boolean found = false;
+        ZipEntry entry;
+        while ((entry = zip.getNextEntry()) != null) {
+            if (!entry.isDirectory()
+                    && entry.getName().toLowerCase(Locale.ROOT).endsWith(".csv")) {
+                found = true;
+                // Each entry's reader is left open, closing it would close the archive
+                body.read(file.getName() + "!" + entry.getName(),
+                        new CSVReader(new InputStreamReader(zip, StandardCharsets.UTF_8)));
+            }
+        }
+        if (!found) {
+            throw new DataImportException("No CSV files found in " + file.getName());
         }
     }
 
+    /**
+     * Reads the rows of one CSV file.
+     */
+    @FunctionalInterface
+    private interface CsvBody {
+        void read(String source, CSVReader csvReader) throws DataImportException,
+                CsvValidationException, IOException, InterruptedException;
+    }
+
+    private List<Crash> crashesFromLines(CrashColumnPlan plan, String source, long firstRecord,
+                                         List<String[]> lines) {
+        List<Crash> crashes = new ArrayList<>(lines.size());
+        long record = firstRecord;
+        for (String[] line : lines) {
+            Crash crash = crashFromString(plan, source, record++, line);
+            if (crash != null) {
+                crashes.add(crash);
+            }
+        }
+        return crashes;
+    }
+
+    /**
+     * Reads the header row and resolves it into a column plan.
+     *
+     * @param csvReader reader positioned at the start of the file
+     * @return plan for reading the rows that follow
+     * @throws DataImportException if the file is empty or is missing required columns
+     */
+    private CrashColumnPlan readColumnPlan(CSVReader csvReader)
+            throws DataImportException, CsvValidationException, IOException {
+        String[] header = csvReader.readNext();
+        if (header == null) {
+            throw new DataImportException("CSV file is empty.");
+        }
+        return CrashColumnPlan.fromHeader(header);
+    }
+
     /**
      * Takes a list of strings representing variables.
      * From the crash data CSV file and returns a Point object.
+     * Rows that cannot be read are recorded in the rejected row log with the reason,
+     * and blank lines are skipped.
      *
+     * @param plan column plan resolved from the file's header
+     * @param source file, or archive entry, the row was read from
+     * @param record position of the row among the file's data rows, starting at 1
      * @param crashVariables a list of strings representing variables
-     * @return Point object initialised with given crashVariables
+     * @return Point object initialised with given crashVariables, or null if invalid
      */
-    private Crash crashFromString(String[] crashVariables) {
+    private Crash crashFromString(CrashColumnPlan plan, String source, long record,
+                                  String[] crashVariables) {
+        if (crashVariables.length == 1 && crashVariables[0].isBlank()) {
+            return null;
+        }
+        if (!plan.hasObjectId(crashVariables)) {
+            rejectedRows.reject(source, record, RejectedRowLog.Reason.MISSING_OBJECT_ID,
+                    "OBJECTID is empty", crashVariables);
+            return null;
+        }
         try {
-            int objectId = changeEmptyToZero(crashVariables[0]);
-            boolean bicycleInvolved = changeEmptyToZero(crashVariables[2]) > 0;
-            boolean busInvolved = changeEmptyToZero(crashVariables[4]) > 0;
-            boolean carInvolved = changeEmptyToZero(crashVariables[5]) > 0;
-            int crashYear = changeEmptyToZero(crashVariables[14]);
-            String crashLocation1 = crashVariables[9];
-            String crashLocation2 = crashVariables[10];
-            String severity = crashVariables[12];
-            boolean holiday = !Objects.equals(crashVariables[22], "");
-            boolean mopedInvolved = changeEmptyToZero(crashVariables[28]) > 0;
-            boolean motorcycleInvolved = changeEmptyToZero(crashVariables[29]) > 0;
-            boolean parkedVehicleInvolved = changeEmptyToZero(crashVariables[35]) > 0;
-            boolean pedestrianInvolved = changeEmptyToZero(crashVariables[36]) > 0;
-            String region = crashVariables[39];
-            boolean schoolBusInvolved = changeEmptyToZero(crashVariables[44]) > 0;
-            int speedLimit = changeEmptyToZero(crashVariables[47]);
-            boolean trainInvolved = changeEmptyToZero(crashVariables[57]) > 0;
-            boolean truckInvolved = changeEmptyToZero(crashVariables[59]) > 0;
-            String weather = crashVariables[65];
-            float longitude = Float.parseFloat(crashVariables[68]);
-            float latitude = Float.parseFloat(crashVariables[67]);
-
-            return new Crash.Builder(objectId)
-                    .speedLimit(speedLimit)
-                    .year(crashYear)
-                    .location1(crashLocation1)
-                    .location2(crashLocation2)
-                    .severity(severity)
-                    .region(region)
-                    .weather(weather)
-                    .longitude(longitude)
-                    .latitude(latitude)
-                    .bicycleInvolved(bicycleInvolved)
-                    .busInvolved(busInvolved)
-                    .carInvolved(carInvolved)
-                    .holiday(holiday)
-                    .mopedInvolved(mopedInvolved)
-                    .motorcycleInvolved(motorcycleInvolved)
-                    .parkedVehicleInvolved(parkedVehicleInvolved)
-                    .pedestrianInvolved(pedestrianInvolved)
-                    .schoolBusInvolved(schoolBusInvolved)
-                    .trainInvolved(trainInvolved)
-                    .truckInvolved(truckInvolved)
-                    .build();
+            Crash crash = plan.toCrash(crashVariables);
+            if (crash.getSeverity() == null) {
+                rejectedRows.reject(source, record, RejectedRowLog.Reason.INVALID_SEVERITY,
+                        "Unknown crash severity", crashVariables);
+                return null;
+            }
+            return crash;
         } catch (NumberFormatException e) {
-            log.error(e);
+            rejectedRows.reject(source, record, RejectedRowLog.Reason.INVALID_NUMBER,
+                    e.getMessage(), crashVariables);
+        } catch (IllegalArgumentException e) {
+            rejectedRows.reject(source, record, RejectedRowLog.Reason.MISSING_COLUMNS,
+                    e.getMessage(), crashVariables);
         }
         return null;
     }
 
+    /**
+     * Gets the number of rows this importer has skipped because they could not be
+     * parsed. Rows are counted as they are parsed, so during a parallel read this can
+     * include rows from chunks not yet passed to the consumer.
+     *
+     * @return number of rows rejected since the importer was created
+     */
+    public int getRejectedCount() {
+        return rejectedRows.getTotal();
+    }
+
+    /**
+     * Gets the log this importer records rejected rows in.
+     *
+     * @return rejected row log
+     */
+    public RejectedRowLog getRejectedRows() {
+        return rejectedRows;
+    }
+
 }
@@ -0,0 +1,430 @@
+package seng202.team10.io;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import seng202.team10.models.Crash;
+import seng202.team10.models.CrashSeverity;
+import seng202.team10.models.Region;
+import seng202.team10.models.Weather;
+
+/**
+ * A compact binary copy of the crashes table, stored column by column so a fresh
+ * database can be filled without parsing the CSV file it was made from. Each column is
+ * a block of fixed width values and text columns are stored as indexes into a
+ * dictionary of distinct strings. A snapshot file is memory mapped rather than read,
+ * so values are decoded straight from the page cache.
+ *
+ * <p>The header records the size and CRC32 checksum of the CSV file the snapshot was
+ * made from and the version of the parser that read it, which lets callers tell when the
+ * bundled data or the way it is parsed has changed and the snapshot is stale.</p>
+ *
+ * @author Team 10
+ */
+public class CrashSnapshot {
+    private static final int MAGIC = 0x53544353;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 32;
+    private static final int NO_STRING = -1;
+    private static final int BICYCLE = 1;
+    private static final int BUS = 1 << 1;
+    private static final int CAR = 1 << 2;
+    private static final int HOLIDAY = 1 << 3;
+    private static final int MOPED = 1 << 4;
+    private static final int MOTORCYCLE = 1 << 5;
+    private static final int PARKED_VEHICLE = 1 << 6;
+    private static final int PEDESTRIAN = 1 << 7;
+    private static final int SCHOOL_BUS = 1 << 8;
+    private static final int TRAIN = 1 << 9;
+    private static final int TRUCK = 1 << 10;
+
+    private final ByteBuffer buffer;
+    private final long sourceLength;
+    private final long sourceChecksum;
+    private final int parserVersion;
+    private final int rowCount;
+    private final String[] dictionary;
+    private final int objectIds;
+    private final int speedLimits;
+    private final int years;
+    private final int severities;
+    private final int longitudes;
+    private final int latitudes;
+    private final int flags;
+    private final int locations1;
+    private final int locations2;
+    private final int regions;
+    private final int weathers;
+
+    private CrashSnapshot(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a crash snapshot");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported crash snapshot version " + buffer.getInt(4));
+        }
+        sourceLength = buffer.getLong(8);
+        sourceChecksum = buffer.getLong(16);
+        parserVersion = buffer.getInt(24);
+        rowCount = buffer.getInt(28);
+
+        try {
+            buffer.position(HEADER_SIZE);
+            dictionary = new String[buffer.getInt()];
+            for (int i = 0; i < dictionary.length; i++) {
+                byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+                buffer.get(bytes);
+                dictionary[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+        } catch (RuntimeException exception) {
+            throw new IOException("Crash snapshot dictionary is corrupt", exception);
+        }
+
+        // Column blocks follow the dictionary in a fixed order
+        objectIds = buffer.position();
+        speedLimits = objectIds + Integer.BYTES * rowCount;
+        years = speedLimits + Integer.BYTES * rowCount;
+        severities = years + Short.BYTES * rowCount;
+        longitudes = severities + rowCount;
+        latitudes = longitudes + Double.BYTES * rowCount;
+        flags = latitudes + Double.BYTES * rowCount;
+        locations1 = flags + Short.BYTES * rowCount;
+        locations2 = locations1 + Integer.BYTES * rowCount;
+        regions = locations2 + Integer.BYTES * rowCount;
+        weathers = regions + Integer.BYTES * rowCount;
+        long end = (long) weathers + (long) Integer.BYTES * rowCount;
+        if (rowCount < 0 || end != buffer.limit()) {
+            throw new IOException("Crash snapshot is truncated or corrupt");
+        }
+    }
+
+    /**
+     * Opens a snapshot file by memory mapping it.
+     *
+     * @param file snapshot file
+     * @return snapshot reading from the mapped file
+     * @throws IOException if the file cannot be read or is not a valid snapshot
+     */
+    public static CrashSnapshot map(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            return new CrashSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size()));
+        }
+    }
+
+    /**
+     * Reads a snapshot from a stream, such as one bundled as a resource in the jar
+     * where it cannot be memory mapped.
+     *
+     * @param stream stream of snapshot bytes, not closed by this method
+     * @return snapshot reading from the bytes
+     * @throws IOException if the stream cannot be read or is not a valid snapshot
+     */
+    public static CrashSnapshot read(InputStream stream) throws IOException {
+        return new CrashSnapshot(ByteBuffer.wrap(stream.readAllBytes()));
+    }
+
+    /**
+     * Gets the size of the CSV file the snapshot was made from.
+     *
+     * @return source file size in bytes
+     */
+    public long getSourceLength() {
+        return sourceLength;
+    }
+
+    /**
+     * Gets the CRC32 checksum of the CSV file the snapshot was made from.
+     *
+     * @return checksum of the source file's bytes
+     */
+    public long getSourceChecksum() {
+        return sourceChecksum;
+    }
+
+    /**
+     * Gets the version of the CSV parser that read the crashes in the snapshot.
+     *
+     * @return parser version, as in {@link CrashCsvImporter#PARSER_VERSION}
+     */
+    public int getParserVersion() {
+        return parserVersion;
+    }
+
+    /**
+     * Checks whether the snapshot was made from a CSV file by the current parser.
+     *
+     * @param length size of the CSV file in bytes
+     * @param checksum CRC32 checksum of the CSV file's bytes
+     * @return true if the snapshot holds the crashes parsing the file would give
+     */
+    public boolean isSnapshotOf(long length, long checksum) {
+        return sourceLength == length && sourceChecksum == checksum
+                && parserVersion == CrashCsvImporter.PARSER_VERSION;
+    }
+
+    /**
+     * Gets the number of crashes in the snapshot.
+     *
+     * @return crash count
+     */
+    public int size() {
+        return rowCount;
+    }
+
+    /**
+     * Gets the latitude of a crash without building the crash.
+     *
+     * @param row index of the crash
+     * @return latitude of the crash
+     */
+    public double getLatitude(int row) {
+        return buffer.getDouble(latitudes + Double.BYTES * row);
+    }
+
+    /**
+     * Gets the longitude of a crash without building the crash.
+     *
+     * @param row index of the crash
+     * @return longitude of the crash
+     */
+    public double getLongitude(int row) {
+        return buffer.getDouble(longitudes + Double.BYTES * row);
+    }
+
+    /**
+     * Builds the crash at the given row.
+     *
+     * @param row index of the crash
+     * @return crash stored at the row
+     */
+    public Crash getCrash(int row) {
+        int flag = buffer.getShort(flags + Short.BYTES * row);
+        return new Crash.Builder(buffer.getInt(objectIds + Integer.BYTES * row))
+                .speedLimit(buffer.getInt(speedLimits + Integer.BYTES * row))
+                .year(buffer.getShort(years + Short.BYTES * row))
+                .location1(stringAt(locations1, row))
+                .location2(stringAt(locations2, row))
+                .severity(CrashSeverity.intToString(buffer.get(severities + row)))
+                .region(enumAt(Region.class, regions, row))
+                .weather(enumAt(Weather.class, weathers, row))
+                .longitude(getLongitude(row))
+                .latitude(getLatitude(row))
+                .bicycleInvolved((flag & BICYCLE) != 0)
+                .busInvolved((flag & BUS) != 0)
+                .carInvolved((flag & CAR) != 0)
+                .holiday((flag & HOLIDAY) != 0)
+                .mopedInvolved((flag & MOPED) != 0)
+                .motorcycleInvolved((flag & MOTORCYCLE) != 0)
+                .parkedVehicleInvolved((flag & PARKED_VEHICLE) != 0)
+                .pedestrianInvolved((flag & PEDESTRIAN) != 0)
+                .schoolBusInvolved((flag & SCHOOL_BUS) != 0)
+                .trainInvolved((flag & TRAIN) != 0)
+                .truckInvolved((flag & TRUCK) != 0)
+                .build();
+    }
+
+    /**
+     * Builds the crashes in chunks, passing each chunk to the consumer before
+     * building the next.
+     *
+     * @param chunkSize maximum number of crashes in each chunk
+     * @param chunkConsumer called with each chunk of crashes in snapshot order
+     * @return number of crashes read
+     */
+    public int readCrashesInChunks(int chunkSize, Consumer<List<Crash>> chunkConsumer) {
+        for (int start = 0; start < rowCount; start += chunkSize) {
+            int end = Math.min(rowCount, start + chunkSize);
+            List<Crash> chunk = new ArrayList<>(end - start);
+            for (int row = start; row < end; row++) {
+                chunk.add(getCrash(row));
+            }
+            chunkConsumer.accept(chunk);
+        }
+        return rowCount;
+    }
+
+    private String stringAt(int column, int row) {
+        int index = buffer.getInt(column + Integer.BYTES * row);
+        return index == NO_STRING ? null : dictionary[index];
+    }
+
+    private <E extends Enum<E>> E enumAt(Class<E> type, int column, int row) {
+        String name = stringAt(column, row);
+        return name == null ? null : Enum.valueOf(type, name);
+    }
+
+    /**
+     * Collects crashes column by column and writes them as a snapshot.
+     */
+    public static class Writer {
+        private final Map<String, Integer> dictionary = new LinkedHashMap<>();
+        private int size = 0;
+        private int[] objectIds = new int[1024];
+        private int[] speedLimits = new int[1024];
+        private short[] years = new short[1024];
+        private byte[] severities = new byte[1024];
+        private double[] longitudes = new double[1024];
+        private double[] latitudes = new double[1024];
+        private short[] flags = new short[1024];
+        private int[] locations1 = new int[1024];
+        private int[] locations2 = new int[1024];
+        private int[] regions = new int[1024];
+        private int[] weathers = new int[1024];
+
+        /**
+         * Adds a crash to the end of the snapshot.
+         *
+         * @param crash crash to add
+         */
+        public void add(Crash crash) {
+            if (size == objectIds.length) {
+                grow();
+            }
+            objectIds[size] = crash.getObjectId();
+            speedLimits[size] = crash.getSpeedLimit();
+            years[size] = (short) crash.getCrashYear();
+            severities[size] = (byte) crash.getSeverity().getValue();
+            longitudes[size] = crash.getLongitude();
+            latitudes[size] = crash.getLatitude();
+            flags[size] = (short) flagsOf(crash);
+            locations1[size] = indexOf(crash.getCrashLocation1());
+            locations2[size] = indexOf(crash.getCrashLocation2());
+            // Regions and weather are stored by constant name, their display names
+            // are not what the builder's string setters parse
+            regions[size] = indexOf(crash.getRegion() == null ? null
+                    : crash.getRegion().name());
+            weathers[size] = indexOf(crash.getWeather() == null ? null
+                    : crash.getWeather().name());
+            size++;
+        }
+
+        /**
+         * Adds crashes to the end of the snapshot.
+         *
+         * @param crashes crashes to add, in order
+         */
+        public void addAll(List<Crash> crashes) {
+            crashes.forEach(this::add);
+        }
+
+        /**
+         * Gets the number of crashes added.
+         *
+         * @return crash count
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Writes the snapshot to a file. The file is written under a temporary name and
+         * moved into place, so a reader never sees a partly written snapshot.
+         *
+         * @param file file to write
+         * @param sourceLength size of the CSV file the crashes were read from
+         * @param sourceChecksum CRC32 checksum of the CSV file the crashes were read from
+         * @param parserVersion version of the parser that read the crashes
+         * @throws IOException if the file cannot be written
+         */
+        public void write(File file, long sourceLength, long sourceChecksum,
+                          int parserVersion) throws IOException {
+            File temp = new File(file.getPath() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(temp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(sourceLength);
+                out.writeLong(sourceChecksum);
+                out.writeInt(parserVersion);
+                out.writeInt(size);
+                out.writeInt(dictionary.size());
+                for (String value : dictionary.keySet()) {
+                    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                    out.writeShort(Math.min(bytes.length, 0xFFFF));
+                    out.write(bytes, 0, Math.min(bytes.length, 0xFFFF));
+                }
+                for (int i = 0; i < size; i++) {
+                    out.writeInt(objectIds[i]);
+                }
+                for (int i = 0; i < size; i++) {
+                    out.writeInt(speedLimits[i]);
+                }
+                for (int i = 0; i < size; i++) {
+                    out.writeShort(years[i]);
+                }
+                out.write(severities, 0, size);
+                for (int i = 0; i < size; i++) {
+                    out.writeDouble(longitudes[i]);
+                }
+                for (int i = 0; i < size; i++) {
+                    out.writeDouble(latitudes[i]);
+                }
+                for (int i = 0; i < size; i++) {
+                    out.writeShort(flags[i]);
+                }
+                for (int[] column : List.of(locations1, locations2, regions, weathers)) {
+                    for (int i = 0; i < size; i++) {
+                        out.writeInt(column[i]);
+                    }
+                }
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        private int indexOf(String value) {
+            if (value == null) {
+                return NO_STRING;
+            }
+            return dictionary.computeIfAbsent(value, key -> dictionary.size());
+        }
+
+        private static int flagsOf(Crash crash) {
+            int flag = 0;
+            flag |= crash.isBicycleInvolved() ? BICYCLE : 0;
+            flag |= crash.isBusInvolved() ? BUS : 0;
+            flag |= crash.isCarInvolved() ? CAR : 0;
+            flag |= crash.isHoliday() ? HOLIDAY : 0;
+            flag |= crash.isMopedInvolved() ? MOPED : 0;
+            flag |= crash.isMotorcycleInvolved() ? MOTORCYCLE : 0;
+            flag |= crash.isParkedVehicleInvolved() ? PARKED_VEHICLE : 0;
+            flag |= crash.isPedestrianInvolved() ? PEDESTRIAN : 0;
+            flag |= crash.isSchoolBusInvolved() ? SCHOOL_BUS : 0;
+            flag |= crash.isTrainInvolved() ? TRAIN : 0;
+            flag |= crash.isTruckInvolved() ? TRUCK : 0;
+            return flag;
+        }
+
+        private void grow() {
+            int capacity = objectIds.length * 2;
+            objectIds = Arrays.copyOf(objectIds, capacity);
+            speedLimits = Arrays.copyOf(speedLimits, capacity);
+            years = Arrays.copyOf(years, capacity);
+            severities = Arrays.copyOf(severities, capacity);
+            longitudes = Arrays.copyOf(longitudes, capacity);
+            latitudes = Arrays.copyOf(latitudes, capacity);
+            flags = Arrays.copyOf(flags, capacity);
+            locations1 = Arrays.copyOf(locations1, capacity);
+            locations2 = Arrays.copyOf(locations2, capacity);
+            regions = Arrays.copyOf(regions, capacity);
+            weathers = Arrays.copyOf(weathers, capacity);
+        }
+    }
+}
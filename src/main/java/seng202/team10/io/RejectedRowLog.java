@@ -0,0 +1,165 @@
+package seng202.team10.io;
+
+import com.opencsv.CSVWriter;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Counts the rows an import rejects by reason and, if given a quarantine file, writes
+ * each one there with its reason and position so it can be inspected or fixed later.
+ * Rows are recorded without a stack trace, which kept dirty files slow to import when
+ * every rejection was logged as an exception. Safe to use from several parser threads.
+ *
+ * @author Team 10
+ */
+public class RejectedRowLog implements AutoCloseable {
+
+    /**
+     * Why a row was rejected.
+     */
+    public enum Reason {
+        /** The row has values but no OBJECTID. */
+        MISSING_OBJECT_ID,
+        /** The row has fewer columns than the header. */
+        MISSING_COLUMNS,
+        /** A numeric column holds something other than a number. */
+        INVALID_NUMBER,
+        /** The crash severity is not one of the known severities. */
+        INVALID_SEVERITY
+    }
+
+    private static final Logger log = LogManager.getLogger(RejectedRowLog.class);
+    private static final String[] HEADER = {"source", "record", "reason", "detail", "row"};
+    private final Map<Reason, AtomicInteger> counts = new EnumMap<>(Reason.class);
+    private final File quarantineFile;
+    private CSVWriter writer;
+
+    /**
+     * Creates a log that only counts rejected rows.
+     */
+    public RejectedRowLog() {
+        this(null);
+    }
+
+    /**
+     * Creates a log that counts rejected rows and writes them to a quarantine file,
+     * replacing it if it exists. The file is only created once a row is rejected.
+     *
+     * @param quarantineFile CSV file to write rejected rows to, or null to only count them
+     */
+    public RejectedRowLog(File quarantineFile) {
+        this.quarantineFile = quarantineFile;
+        for (Reason reason : Reason.values()) {
+            counts.put(reason, new AtomicInteger());
+        }
+    }
+
+    /**
+     * Records a rejected row.
+     *
+     * @param source file, or archive entry, the row was read from
+     * @param record position of the row among the file's data rows, starting at 1
+     * @param reason why the row was rejected
+     * @param detail description of the problem, such as the exception message
+     * @param row values of the row as read
+     */
+    public void reject(String source, long record, Reason reason, String detail,
+                       String[] row) {
+        counts.get(reason).incrementAndGet();
+        if (quarantineFile == null) {
+            return;
+        }
+        synchronized (this) {
+            try {
+                if (writer == null) {
+                    writer = new CSVWriter(new BufferedWriter(new OutputStreamWriter(
+                            new FileOutputStream(quarantineFile), StandardCharsets.UTF_8)));
+                    writer.writeNext(HEADER);
+                }
+                List<String> values = new ArrayList<>(Arrays.asList(source,
+                        String.valueOf(record), reason.name(), detail));
+                values.addAll(Arrays.asList(row));
+                writer.writeNext(values.toArray(new String[0]));
+            } catch (IOException ioException) {
+                log.error("Could not write to quarantine file " + quarantineFile + ": "
+                        + ioException);
+            }
+        }
+    }
+
+    /**
+     * Gets the number of rows rejected for a reason.
+     *
+     * @param reason reason to count
+     * @return number of rows rejected for the reason
+     */
+    public int getCount(Reason reason) {
+        return counts.get(reason).get();
+    }
+
+    /**
+     * Gets the number of rows rejected for any reason.
+     *
+     * @return total rejected rows
+     */
+    public int getTotal() {
+        return counts.values().stream().mapToInt(AtomicInteger::get).sum();
+    }
+
+    /**
+     * Gets the quarantine file rejected rows are written to.
+     *
+     * @return quarantine file, or null if rows are only counted
+     */
+    public File getQuarantineFile() {
+        return quarantineFile;
+    }
+
+    /**
+     * Summarises the rejected rows by reason.
+     *
+     * @return summary such as "3 rows rejected: INVALID_NUMBER 2, MISSING_COLUMNS 1"
+     */
+    public String summary() {
+        int total = getTotal();
+        if (total == 0) {
+            return "No rows rejected";
+        }
+        List<String> parts = new ArrayList<>();
+        counts.forEach((reason, count) -> {
+            if (count.get() > 0) {
+                parts.add(reason.name() + " " + count.get());
+            }
+        });
+        String summary = total + " rows rejected: " + String.join(", ", parts);
+        return quarantineFile == null ? summary : summary + " (saved to " + quarantineFile + ")";
+    }
+
+    /**
+     * Flushes and closes the quarantine file, if one was written.
+     */
+    @Override
+    public synchronized void close() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException ioException) {
+            log.error(ioException);
+        }
+        writer = null;
+    }
+}
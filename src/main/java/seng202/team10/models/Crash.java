@@ -202,6 +202,28 @@ public class Crash {
             return this;
         }
 
+        /**
+         * Sets a crash's region.
+         *
+         * @param region A crash object's region.
+         * @return Builder instance for method chaining.
+         */
+        public Builder region(Region region) {
+            this.region = region;
+            return this;
+        }
+
+        /**
+         * Sets a crash's weather.
+         *
+         * @param weather A crash object's weather.
+         * @return Builder instance for method chaining.
+         */
+        public Builder weather(Weather weather) {
+            this.weather = weather;
+            return this;
+        }
+
         /**
          * Sets a crash's longitude value.
          *
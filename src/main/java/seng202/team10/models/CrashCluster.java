@@ -0,0 +1,16 @@
+package seng202.team10.models;
+
+/**
+ * Group of nearby crashes shown on the map as a single marker at one zoom level.
+ *
+ * @param latitude latitude of the centre of the crashes in the cluster
+ * @param longitude longitude of the centre of the crashes in the cluster
+ * @param count number of crashes in the cluster
+ * @param averageSeverity mean severity value of the crashes in the cluster
+ * @param expansionZoom first zoom level at which the cluster splits up
+ * @param crash the only crash in the cluster, or null if it holds more than one
+ * @author Team 10
+ */
+public record CrashCluster(double latitude, double longitude, int count,
+                           double averageSeverity, int expansionZoom, CrashPoint crash) {
+}
@@ -0,0 +1,18 @@
+package seng202.team10.models;
+
+/**
+ * Compact projection of a crash with only the fields needed to plot and rate it.
+ * Used on read paths that handle many crashes at once, in place of a full Crash
+ * or a HashMap of column values.
+ *
+ * @param objectId id of the crash in the database
+ * @param latitude latitude of the crash
+ * @param longitude longitude of the crash
+ * @param severity severity value of the crash
+ * @param year year the crash occurred
+ * @param weather weather at the time of the crash
+ * @author Team 10
+ */
+public record CrashPoint(int objectId, double latitude, double longitude, int severity,
+                         int year, Weather weather) {
+}
@@ -0,0 +1,13 @@
+package seng202.team10.models;
+
+/**
+ * Cell of the heatmap's density grid at one zoom level, drawn as a single weighted point.
+ *
+ * @param latitude latitude of the centre of the crashes in the cell
+ * @param longitude longitude of the centre of the crashes in the cell
+ * @param count number of crashes in the cell
+ * @param severitySum total severity value of the crashes in the cell, used as its weight
+ * @author Team 10
+ */
+public record HeatmapCell(double latitude, double longitude, int count, long severitySum) {
+}
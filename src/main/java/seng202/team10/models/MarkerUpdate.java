@@ -0,0 +1,19 @@
+package seng202.team10.models;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Changes to the crash markers on the map since it was last updated, by map tile.
+ *
+ * @param tilesReset whether every tile on the map must be dropped before adding tiles,
+ *                   because the zoom or the crashes shown have changed
+ * @param crashesChanged whether the crashes in the database have changed, so markers
+ *                       kept for crashes by object id are out of date
+ * @param removedTiles numbers of the tiles that have left the viewport
+ * @param addedTiles clusters on each tile that has entered the viewport, by tile number
+ * @author Team 10
+ */
+public record MarkerUpdate(boolean tilesReset, boolean crashesChanged, List<Long> removedTiles,
+                           Map<Long, List<CrashCluster>> addedTiles) {
+}
@@ -1,6 +1,5 @@
 package seng202.team10.models;
 
-import java.util.HashMap;
 import java.util.List;
 
 /**
@@ -19,7 +18,7 @@ public class Review {
     public int totalNumPoints;
     public String finalRoad;
 
-    public List<HashMap<String, Object>> crashes;
+    public List<CrashPoint> crashes;
 
     /**
      * Constructs a new Result object with the provided metrics.
@@ -31,11 +30,11 @@ public class Review {
      * @param endYear The end year of the data range considered.
      * @param totalNumPoints Total number of unique overlapping points encountered.
      * @param finalRoad Name of the road where the most severe overlapping point was found.
-     * @param crashes Map of Lists of all of the crashes for the segments.
+     * @param crashes List of all of the crashes for the segments.
      */
     public Review(double dangerRating, double maxSegmentSeverity, String maxWeather, int startYear,
                   int endYear, int totalNumPoints, String finalRoad,
-                  List<HashMap<String, Object>> crashes) {
+                  List<CrashPoint> crashes) {
         this.dangerRating = dangerRating;
         this.maxSegmentSeverity = maxSegmentSeverity;
         this.maxWeather = maxWeather;
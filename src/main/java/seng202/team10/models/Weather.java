@@ -1,5 +1,8 @@
 package seng202.team10.models;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * Weather enum represents different weather conditions associated with a crash object.
  * It provides a mapping between string representations of weather conditions and enum constants.
@@ -15,12 +18,30 @@ public enum Weather {
     SNOW("Snow"),
     NULL("Null");
 
+    private static final Map<String, Weather> BY_NAME = new HashMap<>();
+
+    static {
+        for (Weather weather : values()) {
+            BY_NAME.put(weather.name, weather);
+        }
+    }
+
     private final String name;
 
     Weather(String name) {
         this.name = name;
     }
 
+    /**
+     * Gets the Weather enum constant with the given name, as stored in the database.
+     *
+     * @param name The name of the weather, as returned by {@link #getName()}.
+     * @return The Weather enum constant, or NULL if not found.
+     */
+    public static Weather nameToWeather(String name) {
+        return BY_NAME.getOrDefault(name, Weather.NULL);
+    }
+
     /**
      * Converts a string representation of weather into the corresponding Weather enum constant.
      *
@@ -0,0 +1,232 @@
+package seng202.team10.repository;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Runs database work off the calling thread so the JavaFX application thread never
+ * waits on a query. Work runs on a small bounded pool sized to the number of pooled
+ * read connections and each call returns a CompletableFuture; callers that update the
+ * UI should complete with {@code thenAcceptAsync(..., Platform::runLater)}.
+ *
+ * <p>Cancelling a returned future skips the work if it has not started, and cancels
+ * the SQLite statement it is running if it has. Work submitted with a key replaces
+ * any earlier work with the same key, so a superseded viewport or filter query is
+ * abandoned rather than run to completion.</p>
+ *
+ * @author Team 10
+ */
+public class AsyncRepository {
+    private static final Logger log = LogManager.getLogger(AsyncRepository.class);
+    private static final int QUEUE_CAPACITY = 64;
+    private static final ThreadLocal<QueryTask<?>> CURRENT_TASK = new ThreadLocal<>();
+    private static AsyncRepository instance = null;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, CompletableFuture<?>> latestByKey = new ConcurrentHashMap<>();
+
+    /**
+     * Creates an async repository running work on the given number of threads.
+     *
+     * @param threads number of worker threads
+     */
+    public AsyncRepository(int threads) {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "db-query-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY), threadFactory);
+    }
+
+    /**
+     * Singleton method to get the current instance if it exists otherwise create it.
+     *
+     * @return the single instance of AsyncRepository
+     */
+    public static synchronized AsyncRepository getInstance() {
+        if (instance == null) {
+            instance = new AsyncRepository(new DatabaseConfig().getMaxReadConnections());
+        }
+        return instance;
+    }
+
+    /**
+     * Runs work on a database thread.
+     *
+     * @param work work to run, typically one or more queries
+     * @param <T> type of the work's result
+     * @return future completed with the result, or exceptionally if the work threw
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> work) {
+        QueryTask<T> task = new QueryTask<>(work);
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException rejectedExecutionException) {
+            log.error("Database work queue is full or shut down");
+            task.future.completeExceptionally(rejectedExecutionException);
+        }
+        return task.future;
+    }
+
+    /**
+     * Runs work on a database thread, cancelling any unfinished work submitted
+     * with the same key.
+     *
+     * @param key identifies what the work is for, such as "crash-locations"
+     * @param work work to run, typically one or more queries
+     * @param <T> type of the work's result
+     * @return future completed with the result, or cancelled if it is superseded
+     */
+    public <T> CompletableFuture<T> submitLatest(String key, Supplier<T> work) {
+        CompletableFuture<T> future = submit(work);
+        CompletableFuture<?> previous = latestByKey.put(key, future);
+        if (previous != null) {
+            previous.cancel(false);
+        }
+        future.whenComplete((result, throwable) -> latestByKey.remove(key, future));
+        return future;
+    }
+
+    /**
+     * Runs the query in a builder on a database thread and maps each row.
+     *
+     * @param builder builder holding the query and its parameters
+     * @param rowMapper maps the current row of the result set to an object
+     * @param <T> type each row is mapped to
+     * @return future completed with the mapped rows
+     */
+    public <T> CompletableFuture<List<T>> query(SqliteQueryBuilder builder,
+                                                RowMapper<T> rowMapper) {
+        return submit(() -> builder.buildGetter(rowMapper));
+    }
+
+    /**
+     * Gets the number of tasks waiting for a thread.
+     *
+     * @return queued task count
+     */
+    public int getQueuedCount() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Stops accepting work and cancels anything queued or running.
+     */
+    public void shutdown() {
+        latestByKey.values().forEach(future -> future.cancel(false));
+        for (Runnable queued : executor.shutdownNow()) {
+            ((QueryTask<?>) queued).future.cancel(false);
+        }
+    }
+
+    /**
+     * Records the statement the current database thread is running, so cancelling the
+     * task cancels the statement. Does nothing on threads not owned by this class.
+     *
+     * @param statement statement about to be executed
+     * @throws SQLException if the task has already been cancelled
+     */
+    static void statementStarted(Statement statement) throws SQLException {
+        QueryTask<?> task = CURRENT_TASK.get();
+        if (task != null) {
+            task.start(statement);
+        }
+    }
+
+    /**
+     * Clears the statement recorded by {@link #statementStarted(Statement)}. Must be
+     * called before the statement's connection is returned to the pool.
+     */
+    static void statementFinished() {
+        QueryTask<?> task = CURRENT_TASK.get();
+        if (task != null) {
+            task.finish();
+        }
+    }
+
+    /**
+     * Checks whether the task on the current thread has been cancelled.
+     *
+     * @return true if the current thread is running a cancelled task
+     */
+    static boolean isCurrentTaskCancelled() {
+        QueryTask<?> task = CURRENT_TASK.get();
+        return task != null && task.future.isCancelled();
+    }
+
+    /**
+     * Work with the future it completes and the statement it is running.
+     *
+     * @param <T> type of the work's result
+     */
+    private static final class QueryTask<T> implements Runnable {
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private final Supplier<T> work;
+        private Statement running;
+
+        private QueryTask(Supplier<T> work) {
+            this.work = work;
+            future.whenComplete((result, throwable) -> {
+                if (throwable instanceof CancellationException) {
+                    cancelRunning();
+                }
+            });
+        }
+
+        @Override
+        public void run() {
+            if (future.isDone()) {
+                return;
+            }
+            CURRENT_TASK.set(this);
+            try {
+                future.complete(work.get());
+            } catch (RuntimeException exception) {
+                if (!future.isCancelled()) {
+                    log.error(exception);
+                }
+                future.completeExceptionally(exception);
+            } finally {
+                CURRENT_TASK.remove();
+            }
+        }
+
+        private synchronized void start(Statement statement) throws SQLException {
+            if (future.isCancelled()) {
+                throw new SQLException("Query cancelled");
+            }
+            running = statement;
+        }
+
+        private synchronized void finish() {
+            running = null;
+        }
+
+        private synchronized void cancelRunning() {
+            if (running == null) {
+                return;
+            }
+            try {
+                running.cancel();
+            } catch (SQLException sqlException) {
+                log.error(sqlException);
+            }
+        }
+    }
+}
@@ -0,0 +1,461 @@
+package seng202.team10.repository;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Small pool of long-lived SQLite connections.
+ * Holds a bounded set of reusable read connections and one dedicated writer connection,
+ * so the repository layer does not reopen the database file for every query.
+ * Connections handed out are wrappers whose close() returns them to the pool.
+ * Each connection also caches its prepared statements by SQL text, so repeated
+ * queries of the same shape reuse a compiled statement.
+ *
+ * @author Team 10
+ */
+public class ConnectionPool {
+    private static final Logger log = LogManager.getLogger(ConnectionPool.class);
+    private static final long ACQUIRE_TIMEOUT_SECONDS = 30;
+    private static final int STATEMENT_CACHE_SIZE = 32;
+
+    private final String url;
+    private final int maxReaders;
+    private final List<String> readerPragmas;
+    private final List<String> writerPragmas;
+    private final BlockingQueue<PooledConnection> idleReaders = new LinkedBlockingQueue<>();
+    private final BlockingQueue<PooledConnection> idleWriter = new LinkedBlockingQueue<>(1);
+    private final List<PooledConnection> allConnections = new ArrayList<>();
+    private final AtomicInteger openReaders = new AtomicInteger();
+    private final AtomicInteger activeCount = new AtomicInteger();
+    private final AtomicLong acquireCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong statementCacheHits = new AtomicLong();
+    private final AtomicLong statementCacheMisses = new AtomicLong();
+    private boolean writerOpened = false;
+    private volatile boolean closed = false;
+
+    /**
+     * Creates a pool for the given database. Connections are opened lazily.
+     *
+     * @param url jdbc url of the database
+     * @param maxReaders maximum number of read connections kept open
+     * @param readerPragmas PRAGMA statements run once on each new read connection
+     * @param writerPragmas PRAGMA statements run once on the writer connection
+     */
+    public ConnectionPool(String url, int maxReaders, List<String> readerPragmas,
+                          List<String> writerPragmas) {
+        this.url = url;
+        this.maxReaders = maxReaders;
+        this.readerPragmas = List.copyOf(readerPragmas);
+        this.writerPragmas = List.copyOf(writerPragmas);
+    }
+
+    /**
+     * Borrows a read connection, opening a new one if the pool has not reached its limit,
+     * otherwise waiting for one to be returned.
+     *
+     * @return pooled read connection, returned to the pool when closed
+     * @throws SQLException if the pool is closed, a connection cannot be opened,
+     *                      or none becomes available in time
+     */
+    public Connection acquireReader() throws SQLException {
+        long start = System.nanoTime();
+        PooledConnection connection = idleReaders.poll();
+        if (connection == null && reserveReaderSlot()) {
+            try {
+                connection = open(readerPragmas);
+            } catch (SQLException sqlException) {
+                openReaders.decrementAndGet();
+                throw sqlException;
+            }
+        }
+        if (connection == null) {
+            connection = await(idleReaders);
+        }
+        return lend(connection, idleReaders, start);
+    }
+
+    /**
+     * Borrows the single writer connection, waiting while another caller holds it.
+     *
+     * @return pooled writer connection, returned to the pool when closed
+     * @throws SQLException if the pool is closed, the connection cannot be opened,
+     *                      or it does not become available in time
+     */
+    public Connection acquireWriter() throws SQLException {
+        long start = System.nanoTime();
+        PooledConnection connection = idleWriter.poll();
+        if (connection == null && reserveWriter()) {
+            try {
+                connection = open(writerPragmas);
+            } catch (SQLException sqlException) {
+                releaseWriter();
+                throw sqlException;
+            }
+        }
+        if (connection == null) {
+            connection = await(idleWriter);
+        }
+        return lend(connection, idleWriter, start);
+    }
+
+    /**
+     * Closes every connection the pool has opened. Borrowed connections are closed
+     * when they are returned.
+     */
+    public void close() {
+        closed = true;
+        synchronized (allConnections) {
+            for (PooledConnection connection : allConnections) {
+                connection.closeQuietly();
+            }
+            allConnections.clear();
+        }
+        idleReaders.clear();
+        idleWriter.clear();
+    }
+
+    /**
+     * Gets the number of connections currently borrowed from the pool.
+     *
+     * @return number of active connections
+     */
+    public int getActiveCount() {
+        return activeCount.get();
+    }
+
+    /**
+     * Gets the number of open connections waiting in the pool to be borrowed.
+     *
+     * @return number of idle connections
+     */
+    public int getIdleCount() {
+        return idleReaders.size() + idleWriter.size();
+    }
+
+    /**
+     * Gets the number of times a connection has been borrowed.
+     *
+     * @return number of acquisitions
+     */
+    public long getAcquireCount() {
+        return acquireCount.get();
+    }
+
+    /**
+     * Gets the total time callers have spent waiting to borrow a connection.
+     *
+     * @return total wait time in milliseconds
+     */
+    public long getTotalWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get());
+    }
+
+    /**
+     * Gets the number of prepared statements served from a connection's statement cache.
+     *
+     * @return number of statement cache hits
+     */
+    public long getStatementCacheHits() {
+        return statementCacheHits.get();
+    }
+
+    /**
+     * Gets the number of prepared statements that had to be compiled by SQLite.
+     *
+     * @return number of statement cache misses
+     */
+    public long getStatementCacheMisses() {
+        return statementCacheMisses.get();
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionPool[active=" + getActiveCount() + ", idle=" + getIdleCount()
+                + ", acquired=" + getAcquireCount() + ", waitMillis=" + getTotalWaitMillis()
+                + ", statementHits=" + getStatementCacheHits()
+                + ", statementMisses=" + getStatementCacheMisses() + "]";
+    }
+
+    private boolean reserveReaderSlot() {
+        int current;
+        do {
+            current = openReaders.get();
+            if (current >= maxReaders) {
+                return false;
+            }
+        } while (!openReaders.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    private synchronized boolean reserveWriter() {
+        if (writerOpened) {
+            return false;
+        }
+        writerOpened = true;
+        return true;
+    }
+
+    private synchronized void releaseWriter() {
+        writerOpened = false;
+    }
+
+    private PooledConnection await(BlockingQueue<PooledConnection> queue)
+            throws SQLException {
+        try {
+            PooledConnection connection = queue.poll(ACQUIRE_TIMEOUT_SECONDS,
+                    TimeUnit.SECONDS);
+            if (connection == null) {
+                throw new SQLException("Timed out waiting for a database connection");
+            }
+            return connection;
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted waiting for a database connection");
+        }
+    }
+
+    private PooledConnection open(List<String> pragmas) throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        Connection connection = DriverManager.getConnection(url);
+        try (Statement statement = connection.createStatement()) {
+            for (String pragma : pragmas) {
+                statement.execute(pragma);
+            }
+        } catch (SQLException sqlException) {
+            connection.close();
+            throw sqlException;
+        }
+        PooledConnection pooledConnection = new PooledConnection(connection);
+        synchronized (allConnections) {
+            allConnections.add(pooledConnection);
+        }
+        return pooledConnection;
+    }
+
+    private Connection lend(PooledConnection connection, BlockingQueue<PooledConnection> home,
+                            long start) throws SQLException {
+        if (closed) {
+            connection.closeQuietly();
+            throw new SQLException("Connection pool is closed");
+        }
+        totalWaitNanos.addAndGet(System.nanoTime() - start);
+        acquireCount.incrementAndGet();
+        activeCount.incrementAndGet();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] {Connection.class}, new PooledConnectionHandler(connection, home));
+    }
+
+    private void release(PooledConnection connection, BlockingQueue<PooledConnection> home) {
+        activeCount.decrementAndGet();
+        try {
+            if (!connection.connection.getAutoCommit()) {
+                connection.connection.rollback();
+                connection.connection.setAutoCommit(true);
+            }
+        } catch (SQLException sqlException) {
+            log.error(sqlException);
+            discard(connection, home);
+            return;
+        }
+        if (closed || !home.offer(connection)) {
+            connection.closeQuietly();
+        }
+    }
+
+    private void discard(PooledConnection connection, BlockingQueue<PooledConnection> home) {
+        connection.closeQuietly();
+        synchronized (allConnections) {
+            allConnections.remove(connection);
+        }
+        if (home == idleReaders) {
+            openReaders.decrementAndGet();
+        } else {
+            synchronized (this) {
+                writerOpened = false;
+            }
+        }
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception exception) {
+            log.error(exception);
+        }
+    }
+
+    /**
+     * An open connection owned by the pool, along with its cache of prepared statements.
+     */
+    private class PooledConnection {
+        private final Connection connection;
+        private final Map<String, CachedStatement> statements =
+                new LinkedHashMap<>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(
+                            Map.Entry<String, CachedStatement> eldest) {
+                        if (size() > STATEMENT_CACHE_SIZE && !eldest.getValue().inUse) {
+                            ConnectionPool.closeQuietly(eldest.getValue().statement);
+                            return true;
+                        }
+                        return false;
+                    }
+                };
+
+        PooledConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        /**
+         * Gets a prepared statement for the given SQL, reusing the cached one when
+         * it is not already in use.
+         */
+        PreparedStatement prepare(String sql) throws SQLException {
+            CachedStatement cached = statements.get(sql);
+            if (cached != null && !cached.inUse && !cached.statement.isClosed()) {
+                statementCacheHits.incrementAndGet();
+            } else if (cached != null && cached.inUse) {
+                // Same SQL prepared twice at once, so hand out an uncached statement
+                statementCacheMisses.incrementAndGet();
+                return connection.prepareStatement(sql);
+            } else {
+                statementCacheMisses.incrementAndGet();
+                cached = new CachedStatement(connection.prepareStatement(sql));
+                statements.put(sql, cached);
+            }
+            cached.inUse = true;
+            return (PreparedStatement) Proxy.newProxyInstance(
+                    PreparedStatement.class.getClassLoader(),
+                    new Class<?>[] {PreparedStatement.class}, cached);
+        }
+
+        void closeQuietly() {
+            for (CachedStatement cached : statements.values()) {
+                ConnectionPool.closeQuietly(cached.statement);
+            }
+            statements.clear();
+            ConnectionPool.closeQuietly(connection);
+        }
+    }
+
+    /**
+     * Forwards calls to a cached prepared statement, except close() which resets
+     * the statement and leaves it open for the next query of the same shape.
+     */
+    private static class CachedStatement implements InvocationHandler {
+        private final PreparedStatement statement;
+        private boolean inUse = false;
+
+        CachedStatement(PreparedStatement statement) {
+            this.statement = statement;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    if (inUse) {
+                        inUse = false;
+                        statement.clearBatch();
+                        statement.clearParameters();
+                    }
+                    return null;
+                }
+                case "isClosed" -> {
+                    return !inUse || statement.isClosed();
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                default -> {
+                    try {
+                        return method.invoke(statement, args);
+                    } catch (InvocationTargetException invocationTargetException) {
+                        throw invocationTargetException.getCause();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Forwards calls to the underlying connection, except close() which hands
+     * the connection back to the pool instead.
+     */
+    private class PooledConnectionHandler implements InvocationHandler {
+        private final PooledConnection connection;
+        private final BlockingQueue<PooledConnection> home;
+        private boolean released = false;
+
+        PooledConnectionHandler(PooledConnection connection,
+                                BlockingQueue<PooledConnection> home) {
+            this.connection = connection;
+            this.home = home;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    if (!released) {
+                        released = true;
+                        release(connection, home);
+                    }
+                    return null;
+                }
+                case "isClosed" -> {
+                    return released || connection.connection.isClosed();
+                }
+                case "unwrap" -> {
+                    return ((Class<?>) args[0]).cast(connection.connection);
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return "Pooled" + connection.connection;
+                }
+                default -> {
+                    if (released) {
+                        throw new SQLException("Connection has been returned to the pool");
+                    }
+                    if (method.getName().equals("prepareStatement") && args.length == 1) {
+                        return connection.prepare((String) args[0]);
+                    }
+                    try {
+                        return method.invoke(connection.connection, args);
+                    } catch (InvocationTargetException invocationTargetException) {
+                        throw invocationTargetException.getCause();
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package seng202.team10.repository;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * SQLite connection settings, read from database.properties on the classpath.
+ * Any setting can be overridden with a system property of the same name,
+ * e.g. -Ddatabase.synchronous=FULL.
+ *
+ * @author Team 10
+ */
+public class DatabaseConfig {
+    private static final Logger log = LogManager.getLogger(DatabaseConfig.class);
+    private static final String PROPERTIES_FILE = "/database.properties";
+    private final Properties properties = new Properties();
+
+    /**
+     * Loads the settings from database.properties and system properties.
+     */
+    public DatabaseConfig() {
+        try (InputStream in = getClass().getResourceAsStream(PROPERTIES_FILE)) {
+            if (in != null) {
+                properties.load(in);
+            }
+        } catch (IOException ioException) {
+            log.error(ioException);
+        }
+    }
+
+    /**
+     * Gets a setting, preferring a system property over the properties file.
+     *
+     * @param key name of the setting
+     * @param defaultValue value to use if the setting is not given
+     * @return value of the setting
+     */
+    public String get(String key, String defaultValue) {
+        return System.getProperty(key, properties.getProperty(key, defaultValue)).trim();
+    }
+
+    private int getInt(String key, int defaultValue) {
+        String value = get(key, Integer.toString(defaultValue));
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException numberFormatException) {
+            log.error("Invalid value for " + key + ": " + value);
+            return defaultValue;
+        }
+    }
+
+    private String getKeyword(String key, String defaultValue) {
+        String value = get(key, defaultValue);
+        if (!value.matches("\\w+")) {
+            log.error("Invalid value for " + key + ": " + value);
+            return defaultValue;
+        }
+        return value;
+    }
+
+    private long getLong(String key, long defaultValue) {
+        String value = get(key, Long.toString(defaultValue));
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException numberFormatException) {
+            log.error("Invalid value for " + key + ": " + value);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Gets the maximum number of read connections to pool.
+     *
+     * @return maximum read connections
+     */
+    public int getMaxReadConnections() {
+        return Math.max(1, getInt("database.maxReadConnections", 4));
+    }
+
+    /**
+     * Gets the journal mode, WAL by default so readers are not blocked by a writer.
+     *
+     * @return SQLite journal mode
+     */
+    public String getJournalMode() {
+        return getKeyword("database.journalMode", "WAL");
+    }
+
+    /**
+     * Gets the synchronous level used when writing.
+     *
+     * @return SQLite synchronous level
+     */
+    public String getSynchronous() {
+        return getKeyword("database.synchronous", "NORMAL");
+    }
+
+    /**
+     * Gets the number of bytes of the database to memory map.
+     *
+     * @return SQLite mmap_size
+     */
+    public long getMmapSize() {
+        return getLong("database.mmapSize", 268435456L);
+    }
+
+    /**
+     * Gets the page cache size, in pages if positive or KiB if negative.
+     *
+     * @return SQLite cache_size
+     */
+    public int getCacheSize() {
+        return getInt("database.cacheSize", -16000);
+    }
+
+    /**
+     * Gets where temporary tables and indexes are stored.
+     *
+     * @return SQLite temp_store
+     */
+    public String getTempStore() {
+        return getKeyword("database.tempStore", "MEMORY");
+    }
+
+    /**
+     * Gets how long a connection waits on a locked database before failing.
+     *
+     * @return busy timeout in milliseconds
+     */
+    public int getBusyTimeout() {
+        return getInt("database.busyTimeout", 5000);
+    }
+
+    /**
+     * Gets the number of rows inserted and committed together when importing a file.
+     *
+     * @return rows per import transaction
+     */
+    public int getImportChunkSize() {
+        return Math.max(1, getInt("database.importChunkSize", 5000));
+    }
+
+    /**
+     * Gets the size of import, in bytes of the files read, from which crashes may be bulk
+     * loaded without triggers or indexes into a much smaller table. Imports into an empty
+     * table always are.
+     *
+     * @return smallest import to bulk load
+     */
+    public long getBulkLoadMinBytes() {
+        return getLong("database.bulkLoadMinBytes", 33554432L);
+    }
+
+    /**
+     * Gets the PRAGMAs run on each new read connection.
+     *
+     * @return reader PRAGMA statements
+     */
+    public List<String> getReaderPragmas() {
+        List<String> pragmas = getCommonPragmas();
+        pragmas.add("PRAGMA query_only = ON");
+        return pragmas;
+    }
+
+    /**
+     * Gets the PRAGMAs run on the write connection. The journal mode is set here
+     * since it is stored in the database file and needs a connection that can write.
+     *
+     * @return writer PRAGMA statements
+     */
+    public List<String> getWriterPragmas() {
+        List<String> pragmas = getCommonPragmas();
+        pragmas.add("PRAGMA journal_mode = " + getJournalMode());
+        pragmas.add("PRAGMA synchronous = " + getSynchronous());
+        return pragmas;
+    }
+
+    private List<String> getCommonPragmas() {
+        List<String> pragmas = new ArrayList<>();
+        pragmas.add("PRAGMA busy_timeout = " + getBusyTimeout());
+        pragmas.add("PRAGMA mmap_size = " + getMmapSize());
+        pragmas.add("PRAGMA cache_size = " + getCacheSize());
+        pragmas.add("PRAGMA temp_store = " + getTempStore());
+        return pragmas;
+    }
+}
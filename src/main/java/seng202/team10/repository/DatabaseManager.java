@@ -5,6 +5,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.net.URL;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
@@ -14,12 +15,17 @@ import java.sql.DatabaseMetaData;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import seng202.team10.business.CrashManager;
 import seng202.team10.exceptions.DataImportException;
 import seng202.team10.io.CrashCsvImporter;
+import seng202.team10.io.CrashSnapshot;
 
 /**
  * Class instantiating and initialising SQLite database.
@@ -39,6 +45,10 @@ public class DatabaseManager {
     private static final Logger log = LogManager.getLogger(DatabaseManager.class);
     private static DatabaseManager manager = null;
     private final String url;
+    private final ConnectionPool connectionPool;
+    private final IndexManager indexManager;
+    private final MigrationRunner migrationRunner;
+    private final SchemaCache schemaCache;
 
     /**
      * Private constructor for singleton purposes.
@@ -54,11 +64,34 @@ public class DatabaseManager {
             this.url = url;
         }
 
-        // If database does not exist, create database
-        if (!checkDatabaseExists(this.url)) {
+        DatabaseConfig config = new DatabaseConfig();
+        connectionPool = new ConnectionPool(this.url, config.getMaxReadConnections(),
+                config.getReaderPragmas(), config.getWriterPragmas());
+        indexManager = new IndexManager(this);
+        migrationRunner = new MigrationRunner(this);
+        schemaCache = new SchemaCache(this);
+
+        boolean exists = checkDatabaseExists(this.url);
+        if (!exists) {
             createNewDatabase(this.url);
-            resetDb();
         }
+
+        // Open the writer before any reader so the journal mode is switched while
+        // no other connection holds the database
+        try (Connection conn = connectForWriting()) {
+            log.info("Opened database with journal mode " + config.getJournalMode()
+                    + " and synchronous " + config.getSynchronous());
+        } catch (SQLException sqlException) {
+            log.error(sqlException);
+        }
+
+        // Bring the schema up to date in place, then repair any indexes and triggers that
+        // were dropped, such as by an unfinished bulk load, or, for the spatial index,
+        // left out of step with the crashes table
+        migrationRunner.migrate();
+        indexManager.ensureIndexes();
+        indexManager.ensureTriggers();
+        indexManager.ensureSpatialIndex();
     }
 
     /**
@@ -74,38 +107,154 @@ public class DatabaseManager {
         return manager;
     }
 
+    /**
+     * Creates the singleton instance on the database at the given url instead of the one
+     * beside the jar, such as a scratch database for benchmarks. Must be called before
+     * anything else gets the instance.
+     *
+     * @param url jdbc url of the database, which is created if it does not exist
+     * @return the single instance DatabaseSingleton
+     * @throws IllegalStateException if the instance is already open on another database
+     */
+    public static DatabaseManager initialiseInstanceWithUrl(String url) {
+        if (manager == null) {
+            manager = new DatabaseManager(url);
+        } else if (!manager.url.equals(url)) {
+            throw new IllegalStateException("Database is already open at " + manager.url);
+        }
+        return manager;
+    }
+
     /**
      * Initialises database and checks if populated.
+     * An empty database is filled from a binary snapshot of the CSV file rather than the
+     * CSV itself when one is available: first one bundled next to the CSV resource, then
+     * one saved beside the database. A snapshot is only used if it was made from a CSV of
+     * the same size and CRC32 checksum by the current parser. Otherwise the CSV is parsed
+     * once, saved as a snapshot for next time, and the database is filled from that.
+     * A CSV whose size cannot be found is always parsed directly.
      */
     public void initialiseDatabase(String fileName) {
+        List<Boolean> populated = SqliteQueryBuilder.create()
+                .select("EXISTS (SELECT 1 FROM crashes)").buildGetter(rs -> rs.getBoolean(1));
+        if (!populated.isEmpty() && populated.get(0)) {
+            return;
+        }
+
         CrashManager manager = new CrashManager();
-        List<?> crashes = manager.getCrashLocations();
-        if (crashes.size() == 0) {
-            try {
-                InputStream stream = Thread.currentThread().getContextClassLoader()
-                        .getResourceAsStream(fileName);
-                File tempFile = File.createTempFile("tempCSV", ".csv");
-                assert stream != null;
+        File tempFile = null;
+        try {
+            URL resource = Thread.currentThread().getContextClassLoader().getResource(fileName);
+            if (resource == null) {
+                throw new DataImportException("Crash data " + fileName + " not found.");
+            }
+            long sourceLength = resource.openConnection().getContentLengthLong();
+            tempFile = File.createTempFile("tempCSV", ".csv");
+            CRC32 checksum = new CRC32();
+            try (InputStream stream = new CheckedInputStream(resource.openStream(), checksum)) {
                 Files.copy(stream, tempFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            if (sourceLength < 0) {
+                log.warn("Size of crash data " + fileName + " is unknown, importing the CSV");
+                importFile(tempFile);
+                return;
+            }
+
+            CrashSnapshot snapshot = findSnapshot(fileName, sourceLength, checksum.getValue());
+            if (snapshot != null) {
+                manager.addAllCrashesFromSnapshot(snapshot);
+                return;
+            }
+            File snapshotFile = getSnapshotFile(fileName);
+            try {
+                manager.writeSnapshotFromFile(new CrashCsvImporter(), tempFile, snapshotFile,
+                        sourceLength, checksum.getValue());
+                manager.addAllCrashesFromSnapshot(CrashSnapshot.map(snapshotFile));
+            } catch (IOException ioException) {
+                // Somewhere read only, so fall back to importing the CSV directly
+                log.error("Could not save crash snapshot " + snapshotFile + ": " + ioException);
                 importFile(tempFile);
-                executeSqlScript(getClass().getResourceAsStream("/sql/populate_rtree.sql"));
-            } catch (IOException e) {
-                log.error(e);
-            } catch (DataImportException e) {
-                throw new RuntimeException(e); /// Potentially not needed (wth42)
+            }
+        } catch (IOException e) {
+            log.error(e);
+        } catch (DataImportException e) {
+            throw new RuntimeException(e); /// Potentially not needed (wth42)
+        } finally {
+            if (tempFile != null && !tempFile.delete()) {
+                tempFile.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * Finds a usable snapshot of a CSV resource, bundled or previously saved.
+     *
+     * @param fileName CSV resource the snapshot was made from
+     * @param sourceLength current size of the CSV resource
+     * @param sourceChecksum CRC32 checksum of the CSV resource's bytes
+     * @return snapshot matching the CSV, or null if there is none
+     */
+    private CrashSnapshot findSnapshot(String fileName, long sourceLength,
+                                       long sourceChecksum) {
+        String bundled = fileName.replaceFirst("\\.csv$", "") + ".snapshot";
+        try (InputStream stream = Thread.currentThread().getContextClassLoader()
+                .getResourceAsStream(bundled)) {
+            if (stream != null) {
+                CrashSnapshot snapshot = CrashSnapshot.read(stream);
+                if (snapshot.isSnapshotOf(sourceLength, sourceChecksum)) {
+                    return snapshot;
+                }
+            }
+        } catch (IOException ioException) {
+            log.error("Bundled crash snapshot " + bundled + " is unreadable: " + ioException);
+        }
+
+        File saved = getSnapshotFile(fileName);
+        if (saved.exists()) {
+            try {
+                CrashSnapshot snapshot = CrashSnapshot.map(saved);
+                if (snapshot.isSnapshotOf(sourceLength, sourceChecksum)) {
+                    return snapshot;
+                }
+                log.info("Crash snapshot " + saved + " is out of date, rebuilding it");
+            } catch (IOException ioException) {
+                log.error("Crash snapshot " + saved + " is unreadable: " + ioException);
             }
         }
+        return null;
     }
 
     /**
-     * Connect to the database.
+     * Gets where the snapshot of a CSV resource is saved, beside the database file.
      *
-     * @return database connection
+     * @param fileName CSV resource the snapshot is made from
+     * @return snapshot file, which may not exist yet
+     */
+    public File getSnapshotFile(String fileName) {
+        String name = new File(fileName).getName().replaceFirst("\\.csv$", "") + ".snapshot";
+        return new File(new File(url.substring(12)).getAbsoluteFile().getParentFile(), name);
+    }
+
+    /**
+     * Gets where rows rejected by the last import are saved, beside the database file.
+     *
+     * @return quarantine file, which may not exist
+     */
+    public File getQuarantineFile() {
+        return new File(new File(url.substring(12)).getAbsoluteFile().getParentFile(),
+                "rejected_rows.csv");
+    }
+
+    /**
+     * Borrows a read-only connection to the database from the connection pool.
+     * Closing the connection returns it to the pool.
+     *
+     * @return database connection, or null if none could be acquired
      */
     public Connection connect() {
         Connection conn = null;
         try {
-            conn = DriverManager.getConnection(this.url);
+            conn = connectionPool.acquireReader();
         } catch (SQLException sqlException) {
             log.error(sqlException);
         }
@@ -113,12 +262,74 @@ public class DatabaseManager {
     }
 
     /**
-     * Initialises the database if it does not exist using the sql script included in resources.
+     * Borrows the single writer connection to the database from the connection pool.
+     * Only one caller holds the writer at a time; closing it returns it to the pool.
+     *
+     * @return database connection, or null if none could be acquired
+     */
+    public Connection connectForWriting() {
+        Connection conn = null;
+        try {
+            conn = connectionPool.acquireWriter();
+        } catch (SQLException sqlException) {
+            log.error(sqlException);
+        }
+        return conn;
+    }
+
+    /**
+     * Gets the pool of connections used by the repository layer.
+     *
+     * @return the connection pool, for reading its metrics
+     */
+    public ConnectionPool getConnectionPool() {
+        return connectionPool;
+    }
+
+    /**
+     * Gets the manager of the database's secondary indexes.
+     *
+     * @return the index manager
+     */
+    public IndexManager getIndexManager() {
+        return indexManager;
+    }
+
+    /**
+     * Gets the runner that keeps the database schema up to date.
+     *
+     * @return the migration runner
+     */
+    public MigrationRunner getMigrationRunner() {
+        return migrationRunner;
+    }
+
+    /**
+     * Gets the cache of table columns used when selecting all columns.
+     *
+     * @return the schema cache
+     */
+    public SchemaCache getSchemaCache() {
+        return schemaCache;
+    }
+
+    /**
+     * Closes all pooled connections to the database. Called when the application exits.
+     */
+    public void close() {
+        log.info(connectionPool);
+        connectionPool.close();
+    }
+
+    /**
+     * Drops all tables and recreates them by running every migration from the start.
      */
     public void resetDb() {
         try {
-            InputStream in = getClass().getResourceAsStream("/sql/initialise_database.sql");
+            InputStream in = getClass().getResourceAsStream("/sql/reset_database.sql");
             executeSqlScript(in);
+            schemaCache.invalidate();
+            migrationRunner.migrate();
         } catch (NullPointerException nullPointerException) {
             log.error(nullPointerException);
         }
@@ -164,32 +375,16 @@ public class DatabaseManager {
     }
 
     /**
-     * Initialises given databaseConnection with SQL script
-     * creating the crashes, favourites, and users tables.
+     * Executes an SQL script on the writer connection, statement by statement.
      *
      * @param sqlFile input stream of file containing
      *                sql statements for execution (separated by --SPLIT)
      */
-    private void executeSqlScript(InputStream sqlFile) {
-        try (Connection conn = this.connect();
+    void executeSqlScript(InputStream sqlFile) {
+        try (Connection conn = this.connectForWriting();
              Statement statementConnection = conn.createStatement()) {
-            // Setting up reader with input stream
-            BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(sqlFile));
-
-            // Initialising temp string and string builder
-            String temp;
-            StringBuilder strings = new StringBuilder();
-
-            // Read through stream, add each string, until end signified with null
-            while ((temp = bufferedReader.readLine()) != null) {
-                strings.append(temp);
-            }
-
-            // List of strings that represent each statement
-            String[] statements = strings.toString().split("--SPLIT");
-
             // Execute statements on tables
-            for (String statement : statements) {
+            for (String statement : readSqlStatements(sqlFile)) {
                 statementConnection.execute(statement);
             }
         } catch (SQLException | IOException e) {
@@ -197,18 +392,50 @@ public class DatabaseManager {
         }
     }
 
+    /**
+     * Reads the statements from an SQL script. Line breaks are kept, so statements
+     * may span lines and contain -- comments.
+     *
+     * @param sqlFile input stream of file containing
+     *                sql statements (separated by --SPLIT)
+     * @return list of statements, in order
+     * @throws IOException if the script cannot be read
+     */
+    static List<String> readSqlStatements(InputStream sqlFile) throws IOException {
+        // Setting up reader with input stream
+        BufferedReader bufferedReader = new BufferedReader(
+                new InputStreamReader(sqlFile, StandardCharsets.UTF_8));
+
+        // Initialising temp string and string builder
+        String temp;
+        StringBuilder strings = new StringBuilder();
+
+        // Read through stream, add each string, until end signified with null
+        while ((temp = bufferedReader.readLine()) != null) {
+            strings.append(temp).append('\n');
+        }
+
+        // List of strings that represent each statement
+        List<String> statements = new ArrayList<>();
+        for (String statement : strings.toString().split("--SPLIT")) {
+            if (!statement.isBlank()) {
+                statements.add(statement.strip());
+            }
+        }
+        return statements;
+    }
+
     /**
      * Adds all the file data from the chosen to the database.
+     * The file may be a CSV file, a gzip compressed CSV file, a zip archive of CSV files
+     * or a directory of any of these.
      *
      * @param file the file user chooses
      */
     public void importFile(File file) throws DataImportException {
-        if (file == null || !file.exists()) {
-            throw new DataImportException("File not found or invalid.");
-        }
-
         CrashManager manager = new CrashManager();
         CrashCsvImporter importer = new CrashCsvImporter();
-        manager.addAllCrashesFromFile(importer, file);
+        manager.addAllCrashesFromFiles(importer, CrashCsvImporter.expandSources(
+                Collections.singletonList(file)), false, () -> false, progress -> { });
     }
 }
\ No newline at end of file
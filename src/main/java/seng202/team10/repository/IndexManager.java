@@ -0,0 +1,308 @@
+package seng202.team10.repository;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Manages the secondary indexes on the crashes and favourites tables.
+ * The index set is every CREATE INDEX IF NOT EXISTS statement in the migration
+ * scripts, so indexes that were dropped by hand can be recreated on startup.
+ * Also checks the rtree_index spatial index, which triggers keep in step with
+ * the crashes table, and rebuilds it if the two have drifted apart.
+ *
+ * <p>Large imports can run in bulk load mode, which drops the triggers and the indexes
+ * on the crashes table so each row is written on its own, then recreates them and fills
+ * the spatial index in one pass at the end. Anything a bulk load leaves dropped, such
+ * as after the application is killed mid import, is recreated on the next startup.</p>
+ *
+ * @author Team 10
+ */
+public class IndexManager {
+    private static final Logger log = LogManager.getLogger(IndexManager.class);
+    private static final Pattern INDEX_NAME = Pattern.compile(
+            "^\\s*CREATE INDEX IF NOT EXISTS (\\w+) ON (\\w+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern TRIGGER_NAME = Pattern.compile(
+            "^\\s*CREATE TRIGGER IF NOT EXISTS (\\w+)", Pattern.CASE_INSENSITIVE);
+    private final DatabaseManager databaseManager;
+
+    /**
+     * Creates an index manager for the given database.
+     *
+     * @param databaseManager database to manage the indexes of
+     */
+    public IndexManager(DatabaseManager databaseManager) {
+        this.databaseManager = databaseManager;
+    }
+
+    /**
+     * Gets the names of all indexes defined in the migration scripts.
+     *
+     * @return list of index names
+     */
+    public List<String> getExpectedIndexes() {
+        return new ArrayList<>(getIndexDefinitions().keySet());
+    }
+
+    private Map<String, String> getIndexDefinitions() {
+        Map<String, String> definitions = new LinkedHashMap<>();
+        for (String statement : getMigrationStatements()) {
+            Matcher matcher = INDEX_NAME.matcher(statement);
+            if (matcher.find()) {
+                definitions.put(matcher.group(1), statement);
+            }
+        }
+        return definitions;
+    }
+
+    /**
+     * Gets the names of all triggers defined in the migration scripts.
+     *
+     * @return list of trigger names
+     */
+    public List<String> getExpectedTriggers() {
+        return new ArrayList<>(getTriggerDefinitions().keySet());
+    }
+
+    private Map<String, String> getTriggerDefinitions() {
+        Map<String, String> definitions = new LinkedHashMap<>();
+        for (String statement : getMigrationStatements()) {
+            Matcher matcher = TRIGGER_NAME.matcher(statement);
+            if (matcher.find()) {
+                definitions.put(matcher.group(1), statement);
+            }
+        }
+        return definitions;
+    }
+
+    private List<String> getMigrationStatements() {
+        List<String> statements = new ArrayList<>();
+        for (String script : MigrationRunner.getMigrations()) {
+            try (InputStream in = getClass().getResourceAsStream(script)) {
+                statements.addAll(DatabaseManager.readSqlStatements(in));
+            } catch (IOException | NullPointerException exception) {
+                log.error(exception);
+            }
+        }
+        return statements;
+    }
+
+    private Set<String> getExistingNames(String type) {
+        Set<String> existing = new HashSet<>();
+        try (Connection conn = databaseManager.connect();
+             PreparedStatement ps = conn.prepareStatement(
+                     "SELECT name FROM sqlite_master WHERE type = ?")) {
+            ps.setString(1, type);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    existing.add(rs.getString(1));
+                }
+            }
+        } catch (SQLException sqlException) {
+            log.error(sqlException);
+        }
+        return existing;
+    }
+
+    /**
+     * Gets the names of indexes defined in the migration scripts that are not in the database.
+     *
+     * @return list of missing index names
+     */
+    public List<String> findMissingIndexes() {
+        List<String> missing = new ArrayList<>(getExpectedIndexes());
+        missing.removeAll(getExistingNames("index"));
+        return missing;
+    }
+
+    /**
+     * Creates any indexes in the migration scripts that are missing from the database.
+     */
+    public void ensureIndexes() {
+        List<String> missing = findMissingIndexes();
+        if (missing.isEmpty()) {
+            return;
+        }
+
+        log.info("Creating missing indexes: " + missing);
+        long start = System.currentTimeMillis();
+        Map<String, String> definitions = getIndexDefinitions();
+        try (Connection conn = databaseManager.connectForWriting();
+             Statement statement = conn.createStatement()) {
+            for (String name : missing) {
+                statement.execute(definitions.get(name));
+            }
+        } catch (SQLException sqlException) {
+            log.error(sqlException);
+        }
+        log.info("Created indexes in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * Gets the names of triggers defined in the migration scripts that are not in the database.
+     *
+     * @return list of missing trigger names
+     */
+    public List<String> findMissingTriggers() {
+        List<String> missing = new ArrayList<>(getExpectedTriggers());
+        missing.removeAll(getExistingNames("trigger"));
+        return missing;
+    }
+
+    /**
+     * Creates any triggers in the migration scripts that are missing from the database.
+     * Does not update the spatial index for rows written while they were missing.
+     */
+    public void ensureTriggers() {
+        List<String> missing = findMissingTriggers();
+        if (missing.isEmpty()) {
+            return;
+        }
+
+        log.info("Creating missing triggers: " + missing);
+        Map<String, String> definitions = getTriggerDefinitions();
+        try (Connection conn = databaseManager.connectForWriting();
+             Statement statement = conn.createStatement()) {
+            for (String name : missing) {
+                statement.execute(definitions.get(name));
+            }
+        } catch (SQLException sqlException) {
+            log.error(sqlException);
+        }
+    }
+
+    /**
+     * Starts a bulk load by dropping the spatial index triggers and the indexes on the
+     * crashes table, so rows written until {@link #endBulkLoad()} maintain neither.
+     * Queries still work in the meantime but may be slower, and the spatial index
+     * will not include the new rows.
+     */
+    public void beginBulkLoad() {
+        List<String> indexes = new ArrayList<>();
+        getIndexDefinitions().forEach((name, definition) -> {
+            Matcher matcher = INDEX_NAME.matcher(definition);
+            if (matcher.find() && matcher.group(2).equalsIgnoreCase("crashes")) {
+                indexes.add(name);
+            }
+        });
+        try (Connection conn = databaseManager.connectForWriting();
+             Statement statement = conn.createStatement()) {
+            conn.setAutoCommit(false);
+            for (String name : getExpectedTriggers()) {
+                statement.execute("DROP TRIGGER IF EXISTS " + name);
+            }
+            for (String name : indexes) {
+                statement.execute("DROP INDEX IF EXISTS " + name);
+            }
+            conn.commit();
+        } catch (SQLException sqlException) {
+            log.error(sqlException);
+        }
+        log.info("Started bulk load without triggers or indexes " + indexes);
+    }
+
+    /**
+     * Ends a bulk load by recreating the triggers and indexes and refilling the spatial
+     * index from the crashes table.
+     */
+    public void endBulkLoad() {
+        ensureIndexes();
+        ensureTriggers();
+        rebuildSpatialIndex();
+    }
+
+    /**
+     * Checks every crash has exactly one entry in the spatial index.
+     *
+     * @return true if the spatial index matches the crashes table
+     */
+    public boolean isSpatialIndexConsistent() {
+        // rtree_index_rowid is the rtree's own table of ids, which is much faster to
+        // count and join against than the virtual table
+        try (Connection conn = databaseManager.connect();
+             PreparedStatement ps = conn.prepareStatement(
+                     "SELECT (SELECT COUNT(*) FROM crashes), "
+                     + "(SELECT COUNT(*) FROM rtree_index_rowid), "
+                     + "(SELECT COUNT(*) FROM crashes "
+                     + "WHERE object_id NOT IN (SELECT rowid FROM rtree_index_rowid))");
+             ResultSet rs = ps.executeQuery()) {
+            return rs.next() && rs.getLong(1) == rs.getLong(2) && rs.getLong(3) == 0;
+        } catch (SQLException sqlException) {
+            log.error(sqlException);
+            return false;
+        }
+    }
+
+    /**
+     * Refills the spatial index from the crashes table in a single transaction.
+     * Rows are inserted in table order, as sorting them along a space-filling curve
+     * first made the rebuild slower and the rtree larger.
+     */
+    public void rebuildSpatialIndex() {
+        long start = System.currentTimeMillis();
+        try (Connection conn = databaseManager.connectForWriting();
+             Statement statement = conn.createStatement()) {
+            conn.setAutoCommit(false);
+            statement.execute("DELETE FROM rtree_index");
+            statement.execute("INSERT INTO rtree_index(id, minX, maxX, minY, maxY) "
+                    + "SELECT object_id, longitude, longitude, latitude, latitude FROM crashes");
+            conn.commit();
+        } catch (SQLException sqlException) {
+            log.error(sqlException);
+        }
+        log.info("Rebuilt spatial index in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * Rebuilds the spatial index if it does not match the crashes table.
+     */
+    public void ensureSpatialIndex() {
+        long start = System.currentTimeMillis();
+        boolean consistent = isSpatialIndexConsistent();
+        log.info("Checked spatial index in " + (System.currentTimeMillis() - start) + " ms");
+        if (!consistent) {
+            log.warn("Spatial index does not match crashes table, rebuilding");
+            rebuildSpatialIndex();
+        }
+    }
+
+    /**
+     * Gets the query plan SQLite chooses for the query in a builder.
+     *
+     * @param builder builder holding the query and its parameters
+     * @return lines of the query plan
+     */
+    public List<String> explainQueryPlan(SqliteQueryBuilder builder) {
+        List<String> plan = new ArrayList<>();
+        try (Connection conn = databaseManager.connect();
+             PreparedStatement ps = conn.prepareStatement(
+                     "EXPLAIN QUERY PLAN " + builder.getQuery())) {
+            List<Object> parameters = builder.getParameters();
+            for (int i = 0; i < parameters.size(); i++) {
+                ps.setObject(i + 1, parameters.get(i));
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    plan.add(rs.getString("detail"));
+                }
+            }
+        } catch (SQLException sqlException) {
+            log.error(sqlException);
+        }
+        return plan;
+    }
+}
@@ -0,0 +1,136 @@
+package seng202.team10.repository;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Brings the database schema up to date by applying migration scripts in order.
+ * The number of scripts applied is stored in the database's user_version, so an
+ * existing database only runs the scripts added since it was last opened and
+ * keeps its data. A database at version 0 runs every script; the first script
+ * uses CREATE TABLE IF NOT EXISTS so it is safe on databases made before migrations.
+ *
+ * <p>New scripts are added to the end of MIGRATIONS and must never be edited once
+ * released, since databases that already ran them will not run them again.</p>
+ *
+ * @author Team 10
+ */
+public class MigrationRunner {
+    private static final Logger log = LogManager.getLogger(MigrationRunner.class);
+    private static final List<String> MIGRATIONS = List.of(
+            "/sql/migrations/001_initial_schema.sql",
+            "/sql/migrations/002_filter_indexes.sql",
+            "/sql/migrations/003_rtree_triggers.sql",
+            "/sql/migrations/004_rtree_update_when.sql",
+            "/sql/migrations/005_rtree_update_trigger.sql");
+    private final DatabaseManager databaseManager;
+
+    /**
+     * Creates a migration runner for the given database.
+     *
+     * @param databaseManager database to migrate
+     */
+    public MigrationRunner(DatabaseManager databaseManager) {
+        this.databaseManager = databaseManager;
+    }
+
+    /**
+     * Gets the migration scripts, in the order they are applied.
+     *
+     * @return list of script resource paths
+     */
+    public static List<String> getMigrations() {
+        return MIGRATIONS;
+    }
+
+    /**
+     * Gets the schema version the migration scripts bring the database to.
+     *
+     * @return latest schema version
+     */
+    public int getLatestVersion() {
+        return MIGRATIONS.size();
+    }
+
+    /**
+     * Gets the schema version of the database.
+     *
+     * @return current schema version, or -1 if it could not be read
+     */
+    public int getCurrentVersion() {
+        try (Connection conn = databaseManager.connectForWriting()) {
+            return readVersion(conn);
+        } catch (SQLException sqlException) {
+            log.error(sqlException);
+            return -1;
+        }
+    }
+
+    /**
+     * Applies every migration script newer than the database's schema version.
+     * Each script runs in its own transaction along with the version update, so a
+     * failed script is rolled back and leaves the database at the previous version.
+     *
+     * @return schema version of the database after migrating
+     */
+    public int migrate() {
+        try (Connection conn = databaseManager.connectForWriting()) {
+            int version = readVersion(conn);
+            if (version > getLatestVersion()) {
+                log.warn("Database schema version " + version
+                        + " is newer than this application's " + getLatestVersion());
+                return version;
+            }
+
+            while (version < getLatestVersion()) {
+                String script = MIGRATIONS.get(version);
+                long start = System.currentTimeMillis();
+                applyMigration(conn, script, version + 1);
+                databaseManager.getSchemaCache().invalidate();
+                version++;
+                log.info("Migrated database to version " + version + " with " + script
+                        + " in " + (System.currentTimeMillis() - start) + " ms");
+            }
+            return version;
+        } catch (SQLException | IOException | NullPointerException exception) {
+            log.error(exception);
+            return getCurrentVersion();
+        }
+    }
+
+    private void applyMigration(Connection conn, String script, int version)
+            throws SQLException, IOException {
+        List<String> statements;
+        try (InputStream in = getClass().getResourceAsStream(script)) {
+            statements = DatabaseManager.readSqlStatements(in);
+        }
+
+        conn.setAutoCommit(false);
+        try (Statement statement = conn.createStatement()) {
+            for (String sql : statements) {
+                statement.execute(sql);
+            }
+            statement.execute("PRAGMA user_version = " + version);
+            conn.commit();
+        } catch (SQLException sqlException) {
+            conn.rollback();
+            throw sqlException;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    private int readVersion(Connection conn) throws SQLException {
+        try (Statement statement = conn.createStatement();
+             ResultSet rs = statement.executeQuery("PRAGMA user_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package seng202.team10.repository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An SQL condition with ? placeholders and the values bound to them.
+ * Keeping values out of the SQL text means every query of the same shape has the
+ * same text, so its compiled statement can be reused.
+ *
+ * @author Team 10
+ */
+public class QueryCondition {
+    private static final QueryCondition EMPTY = new QueryCondition("", List.of());
+    private final String sql;
+    private final List<Object> parameters;
+
+    private QueryCondition(String sql, List<Object> parameters) {
+        this.sql = sql;
+        this.parameters = parameters;
+    }
+
+    /**
+     * Creates a condition from SQL text and the values for its placeholders, in order.
+     *
+     * @param sql condition with ? placeholders
+     * @param parameters values bound to the placeholders
+     * @return the condition
+     */
+    public static QueryCondition of(String sql, Object... parameters) {
+        return new QueryCondition(sql,
+                Collections.unmodifiableList(new ArrayList<>(Arrays.asList(parameters))));
+    }
+
+    /**
+     * Gets a condition with no SQL, which is ignored when combined with others.
+     *
+     * @return the empty condition
+     */
+    public static QueryCondition empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Builds an "IN (?, ?, ...)" condition with one placeholder per value.
+     *
+     * @param column column to test
+     * @param values values the column may take
+     * @return the condition
+     */
+    public static QueryCondition in(String column, List<?> values) {
+        String placeholders = String.join(", ", Collections.nCopies(values.size(), "?"));
+        return new QueryCondition(column + " IN (" + placeholders + ")",
+                Collections.unmodifiableList(new ArrayList<>(values)));
+    }
+
+    /**
+     * Joins this condition with another using AND. Empty conditions are skipped.
+     *
+     * @param other condition to join
+     * @return the combined condition
+     */
+    public QueryCondition and(QueryCondition other) {
+        if (other.isEmpty()) {
+            return this;
+        } else if (isEmpty()) {
+            return other;
+        }
+        List<Object> combined = new ArrayList<>(parameters);
+        combined.addAll(other.parameters);
+        return new QueryCondition(sql + " AND " + other.sql,
+                Collections.unmodifiableList(combined));
+    }
+
+    /**
+     * Joins this condition with the negation of another using AND NOT. Rows the other
+     * condition is NULL for are counted as not matching it, so they can still match.
+     *
+     * @param other condition to negate
+     * @return the combined condition, which matches nothing if the other is empty
+     */
+    public QueryCondition andNot(QueryCondition other) {
+        if (other.isEmpty()) {
+            return of("0");
+        }
+        return and(new QueryCondition("NOT COALESCE((" + other.sql + "), 0)",
+                other.parameters));
+    }
+
+    /**
+     * Checks whether the condition has any SQL.
+     *
+     * @return true if the condition is empty
+     */
+    public boolean isEmpty() {
+        return sql.isEmpty();
+    }
+
+    /**
+     * Gets the SQL text of the condition.
+     *
+     * @return condition with ? placeholders
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * Gets the values bound to the placeholders, in order.
+     *
+     * @return list of parameter values
+     */
+    public List<Object> getParameters() {
+        return parameters;
+    }
+
+    @Override
+    public String toString() {
+        return sql + " " + parameters;
+    }
+}
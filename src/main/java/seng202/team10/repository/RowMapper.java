@@ -0,0 +1,25 @@
+package seng202.team10.repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Maps the current row of a result set to an object.
+ * Used with {@link SqliteQueryBuilder#buildGetter(RowMapper)} so callers read the
+ * columns they need straight into their own type instead of a HashMap per row.
+ *
+ * @param <T> type each row is mapped to
+ * @author Team 10
+ */
+@FunctionalInterface
+public interface RowMapper<T> {
+
+    /**
+     * Maps the row the result set is currently on. Must not move the cursor.
+     *
+     * @param rs result set positioned on the row to map
+     * @return the mapped row
+     * @throws SQLException if a column cannot be read
+     */
+    T mapRow(ResultSet rs) throws SQLException;
+}
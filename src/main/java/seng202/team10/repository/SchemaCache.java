@@ -0,0 +1,76 @@
+package seng202.team10.repository;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Caches the column names of each table so selecting all columns does not read the
+ * database metadata on every query. The cache is cleared whenever the schema changes,
+ * which only happens through migrations or a reset.
+ *
+ * @author Team 10
+ */
+public class SchemaCache {
+    private static final Logger log = LogManager.getLogger(SchemaCache.class);
+    private final DatabaseManager databaseManager;
+    private final Map<String, List<String>> columnsByTable = new ConcurrentHashMap<>();
+
+    /**
+     * Creates an empty schema cache for the given database.
+     *
+     * @param databaseManager database to read table metadata from
+     */
+    public SchemaCache(DatabaseManager databaseManager) {
+        this.databaseManager = databaseManager;
+    }
+
+    /**
+     * Gets the column names of a table in declaration order, reading them from the
+     * database metadata the first time the table is asked for.
+     *
+     * @param table name of the table
+     * @return unmodifiable list of column names, empty if the table does not exist
+     */
+    public List<String> getColumns(String table) {
+        List<String> columns = columnsByTable.get(table);
+        if (columns == null) {
+            columns = readColumns(table);
+            // Tables that do not exist yet are not cached so they are found once created
+            if (!columns.isEmpty()) {
+                columnsByTable.put(table, columns);
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * Clears all cached table columns. Called after the schema changes.
+     */
+    public void invalidate() {
+        columnsByTable.clear();
+    }
+
+    private List<String> readColumns(String table) {
+        List<String> columns = new ArrayList<>();
+        try (Connection conn = databaseManager.connect()) {
+            DatabaseMetaData metaData = conn.getMetaData();
+            try (ResultSet rs = metaData.getColumns(null, null, table, null)) {
+                while (rs.next()) {
+                    columns.add(rs.getString("COLUMN_NAME"));
+                }
+            }
+        } catch (SQLException sqlException) {
+            log.error(sqlException);
+        }
+        return Collections.unmodifiableList(columns);
+    }
+}
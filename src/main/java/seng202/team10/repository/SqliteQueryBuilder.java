@@ -1,17 +1,22 @@
 package seng202.team10.repository;
 
 import java.sql.Connection;
-import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.StringJoiner;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.controlsfx.control.tableview2.filter.filtereditor.SouthFilter;
@@ -36,10 +41,18 @@ import seng202.team10.models.Favourite;
 
 public class SqliteQueryBuilder {
     private static final Logger log = LogManager.getLogger(SqliteQueryBuilder.class);
+    private static final List<String> CRASH_COLUMNS = List.of("speed_limit", "crash_year",
+            "crash_location1", "crash_location2", "severity", "region", "weather",
+            "longitude", "latitude", "bicycle_involved", "bus_involved", "car_involved",
+            "holiday", "moped_involved", "motorcycle_involved", "parked_vehicle_involved",
+            "pedestrian_involved", "school_bus_involved", "train_involved", "truck_involved");
     private final DatabaseManager databaseManager;
-    private static StringBuilder query;
+    private final StringBuilder query;
     private final List<String> selectedColumns;
+    private final List<Object> parameters;
     private boolean allColumnsFromTable = false;
+    private boolean keepObjectId = false;
+    private int fetchSize = 0;
     private String table;
 
     /**
@@ -48,8 +61,9 @@ public class SqliteQueryBuilder {
      */
     private SqliteQueryBuilder() {
         this.databaseManager = DatabaseManager.getInstance();
-        query = new StringBuilder();
+        this.query = new StringBuilder();
         this.selectedColumns = new ArrayList<>();
+        this.parameters = new ArrayList<>();
     }
 
     /**
@@ -92,6 +106,41 @@ public class SqliteQueryBuilder {
         return this;
     }
 
+    /**
+     * Takes a table to insert into keyed on each row's own object_id. Rows whose id is
+     * new are inserted, rows that exist and differ are updated, and rows that exist
+     * unchanged are left alone, so importing the same file again changes nothing.
+     * Only the crashes table is supported.
+     *
+     * @param table table to insert into or update
+     * @return SQLiteQueryBuilder instance to chain methods
+     */
+    public SqliteQueryBuilder upsert(String table) {
+        if (!table.equals("crashes")) {
+            log.error("Upsert is not supported for table " + table);
+            return insert(table);
+        }
+
+        String columns = String.join(", ", CRASH_COLUMNS);
+        String excluded = CRASH_COLUMNS.stream().map(column -> "excluded." + column)
+                .collect(Collectors.joining(", "));
+        String existing = CRASH_COLUMNS.stream().map(column -> table + "." + column)
+                .collect(Collectors.joining(", "));
+        String placeholders = String.join(",",
+                Collections.nCopies(CRASH_COLUMNS.size() + 1, "?"));
+
+        query.append("INSERT INTO ").append(table).append(" (object_id, ").append(columns)
+                .append(") values (").append(placeholders).append(") ")
+                .append("ON CONFLICT(object_id) DO UPDATE SET (").append(columns)
+                .append(") = (").append(excluded).append(") ")
+                .append("WHERE (").append(existing).append(") IS NOT (").append(excluded)
+                .append(");");
+        this.table = table;
+        keepObjectId = true;
+
+        return this;
+    }
+
     /**
      * Takes a table to delete to and appends to current query.
      *
@@ -143,7 +192,8 @@ public class SqliteQueryBuilder {
 
     /**
      * Takes a table name to query data from.
-     * Note: Updates selected columns list from the table's metadata if all columns selected.
+     * Note: Updates selected columns list from the table's cached columns if all columns
+     * are selected.
      *
      * @param table String of table name
      * @return SQLiteQueryBuilder instance to chain methods
@@ -156,17 +206,8 @@ public class SqliteQueryBuilder {
         if (selectedColumns.contains("*")) {
             allColumnsFromTable = true;
 
-            try (Connection conn = databaseManager.connect()) {
-                DatabaseMetaData metaData = conn.getMetaData();
-                ResultSet rs = metaData.getColumns(null, null, table, null);
-
-                selectedColumns.clear();
-                while (rs.next()) {
-                    selectedColumns.add(rs.getString("COLUMN_NAME"));
-                }
-            } catch (SQLException sqlException) {
-                log.error(sqlException);
-            }
+            selectedColumns.clear();
+            selectedColumns.addAll(databaseManager.getSchemaCache().getColumns(table));
         }
 
         return this;
@@ -183,14 +224,68 @@ public class SqliteQueryBuilder {
         return this;
     }
 
+    /**
+     * Takes a string of conditions with ? placeholders and the values to bind to them.
+     * Values are bound when the query is built rather than written into the SQL,
+     * so queries of the same shape share a cached statement.
+     *
+     * @param conditions string of conditions with ? placeholders
+     * @param parameters values for the placeholders, in order
+     * @return SQLiteQueryBuilder instance to chain methods
+     */
+    public SqliteQueryBuilder where(String conditions, Object... parameters) {
+        this.parameters.addAll(Arrays.asList(parameters));
+        return where(conditions);
+    }
+
+    /**
+     * Takes a condition and appends it and its parameters to the current query.
+     * Empty conditions add nothing to the query.
+     *
+     * @param condition condition with ? placeholders and its parameters
+     * @return SQLiteQueryBuilder instance to chain methods
+     */
+    public SqliteQueryBuilder where(QueryCondition condition) {
+        if (condition.isEmpty()) {
+            return this;
+        }
+        this.parameters.addAll(condition.getParameters());
+        return where(condition.getSql());
+    }
+
+    /**
+     * Sets the number of rows the driver should fetch at a time when reading results.
+     * Zero leaves it to the driver's default.
+     *
+     * @param fetchSize number of rows to fetch at a time
+     * @return SQLiteQueryBuilder instance to chain methods
+     */
+    public SqliteQueryBuilder fetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+        return this;
+    }
+
+    /**
+     * Binds the parameters given to where onto a prepared statement.
+     *
+     * @param ps prepared statement of the current query
+     * @throws SQLException if a parameter cannot be bound
+     */
+    private void bindParameters(PreparedStatement ps) throws SQLException {
+        for (int i = 0; i < parameters.size(); i++) {
+            ps.setObject(i + 1, parameters.get(i));
+        }
+    }
+
     /**
      * Takes the query in the builder object and a list of objects
      * and deletes it to the given table in the query.
      */
     public void buildDeleter() {
-        try (Connection conn = databaseManager.connect();
-             Statement stmt = conn.createStatement()) {
-            stmt.executeUpdate(query.toString());
+        try (Connection conn = databaseManager.connectForWriting();
+             PreparedStatement ps = conn.prepareStatement(query.toString())) {
+            bindParameters(ps);
+            ps.executeUpdate();
         } catch (SQLException sqlException) {
             log.error(sqlException);
         }
@@ -201,9 +296,11 @@ public class SqliteQueryBuilder {
      * and adds it to the given table in the query.
      *
      * @param objectsToAdd Crash or Favourite objects to add.
+     * @return number of rows inserted or updated
      */
-    public void buildSetter(List<?> objectsToAdd) {
-        try (Connection conn = databaseManager.connect();
+    public int buildSetter(List<?> objectsToAdd) {
+        int changed = 0;
+        try (Connection conn = databaseManager.connectForWriting();
              PreparedStatement ps = conn.prepareStatement(query.toString());) {
             conn.setAutoCommit(false);
 
@@ -223,12 +320,14 @@ public class SqliteQueryBuilder {
                 }
             }
 
-            ps.executeBatch();
+            for (int count : ps.executeBatch()) {
+                changed += Math.max(count, 0);
+            }
             conn.commit();
         } catch (SQLException sqlException) {
             log.error(sqlException);
         }
-
+        return changed;
     }
 
     /**
@@ -239,26 +338,32 @@ public class SqliteQueryBuilder {
      */
     private void addCrashToPreparedStatement(PreparedStatement ps, Crash crashToAdd) {
         try {
-            ps.setInt(1, crashToAdd.getSpeedLimit());
-            ps.setInt(2, crashToAdd.getCrashYear());
-            ps.setString(3, crashToAdd.getCrashLocation1());
-            ps.setString(4, crashToAdd.getCrashLocation2());
-            ps.setInt(5, crashToAdd.getSeverity().getValue());
-            ps.setString(6, crashToAdd.getRegion().getName());
-            ps.setString(7, crashToAdd.getWeather().getName());
-            ps.setDouble(8, crashToAdd.getLongitude());
-            ps.setDouble(9, crashToAdd.getLatitude());
-            ps.setBoolean(10, crashToAdd.isBicycleInvolved());
-            ps.setBoolean(11, crashToAdd.isBusInvolved());
-            ps.setBoolean(12, crashToAdd.isCarInvolved());
-            ps.setBoolean(13, crashToAdd.isHoliday());
-            ps.setBoolean(14, crashToAdd.isMopedInvolved());
-            ps.setBoolean(15, crashToAdd.isMotorcycleInvolved());
-            ps.setBoolean(16, crashToAdd.isParkedVehicleInvolved());
-            ps.setBoolean(17, crashToAdd.isPedestrianInvolved());
-            ps.setBoolean(18, crashToAdd.isSchoolBusInvolved());
-            ps.setBoolean(19, crashToAdd.isTrainInvolved());
-            ps.setBoolean(20, crashToAdd.isTruckInvolved());
+            // Upserts bind the crash's own id ahead of the other columns
+            int offset = 0;
+            if (keepObjectId) {
+                ps.setInt(1, crashToAdd.getObjectId());
+                offset = 1;
+            }
+            ps.setInt(offset + 1, crashToAdd.getSpeedLimit());
+            ps.setInt(offset + 2, crashToAdd.getCrashYear());
+            ps.setString(offset + 3, crashToAdd.getCrashLocation1());
+            ps.setString(offset + 4, crashToAdd.getCrashLocation2());
+            ps.setInt(offset + 5, crashToAdd.getSeverity().getValue());
+            ps.setString(offset + 6, crashToAdd.getRegion().getName());
+            ps.setString(offset + 7, crashToAdd.getWeather().getName());
+            ps.setDouble(offset + 8, crashToAdd.getLongitude());
+            ps.setDouble(offset + 9, crashToAdd.getLatitude());
+            ps.setBoolean(offset + 10, crashToAdd.isBicycleInvolved());
+            ps.setBoolean(offset + 11, crashToAdd.isBusInvolved());
+            ps.setBoolean(offset + 12, crashToAdd.isCarInvolved());
+            ps.setBoolean(offset + 13, crashToAdd.isHoliday());
+            ps.setBoolean(offset + 14, crashToAdd.isMopedInvolved());
+            ps.setBoolean(offset + 15, crashToAdd.isMotorcycleInvolved());
+            ps.setBoolean(offset + 16, crashToAdd.isParkedVehicleInvolved());
+            ps.setBoolean(offset + 17, crashToAdd.isPedestrianInvolved());
+            ps.setBoolean(offset + 18, crashToAdd.isSchoolBusInvolved());
+            ps.setBoolean(offset + 19, crashToAdd.isTrainInvolved());
+            ps.setBoolean(offset + 20, crashToAdd.isTruckInvolved());
         } catch (SQLException sqlException) {
             log.error(sqlException);
         }
@@ -288,37 +393,161 @@ public class SqliteQueryBuilder {
 
     /**
      * Takes the query in the builder object and returns a list of all data points in a List object.
+     * Rows are Crash or Favourite objects when all columns of those tables are selected,
+     * otherwise a HashMap of the selected columns.
      *
      * @return List of all data points from the current query string
      */
     public List<?> buildGetter() {
-        List<Object> data = new ArrayList<>();
+        return buildGetter(this::resultAsObject);
+    }
+
+    /**
+     * Takes the query in the builder object and maps each row with the given row mapper.
+     *
+     * @param rowMapper maps the current row of the result set to an object
+     * @param <T> type each row is mapped to
+     * @return List of mapped rows from the current query string
+     */
+    public <T> List<T> buildGetter(RowMapper<T> rowMapper) {
+        List<T> data = new ArrayList<>();
         try (Connection conn = databaseManager.connect();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(query.toString())) {
-            // Loop through the results until no result is left
-            int counter = 0;
-            while (rs.next()) {
-                counter += 1;
-                Object temp = null;
-                if (allColumnsFromTable) {
-                    if (table.equals("crashes")) {
-                        temp = resultsAsCrash(rs);
-                    } else if (table.equals("favourites")) {
-                        temp = resultsAsFavourite(rs);
-                    }
-                } else {
-                    temp = resultAsHashmap(rs);
+             PreparedStatement ps = conn.prepareStatement(query.toString())) {
+            bindParameters(ps);
+            ps.setFetchSize(fetchSize);
+            AsyncRepository.statementStarted(ps);
+            try (ResultSet rs = ps.executeQuery()) {
+                // Loop through the results until no result is left
+                while (rs.next()) {
+                    data.add(rowMapper.mapRow(rs));
                 }
-                data.add(temp);
+            } finally {
+                AsyncRepository.statementFinished();
             }
         } catch (SQLException sqlException) {
-            log.error(sqlException);
+            logQueryException(sqlException);
         }
 
         return data;
     }
 
+    /**
+     * Takes the query in the builder object and streams each row mapped with the given
+     * row mapper, reading rows from the database only as the stream is consumed.
+     * The stream holds a database connection until it is closed, so it must be used
+     * in a try-with-resources block.
+     *
+     * @param rowMapper maps the current row of the result set to an object
+     * @param <T> type each row is mapped to
+     * @return Stream of mapped rows from the current query string, to be closed after use
+     */
+    public <T> Stream<T> buildStream(RowMapper<T> rowMapper) {
+        Connection conn = null;
+        PreparedStatement ps = null;
+        ResultSet rs;
+        try {
+            conn = databaseManager.connect();
+            ps = conn.prepareStatement(query.toString());
+            bindParameters(ps);
+            ps.setFetchSize(fetchSize);
+            AsyncRepository.statementStarted(ps);
+            rs = ps.executeQuery();
+        } catch (SQLException sqlException) {
+            logQueryException(sqlException);
+            AsyncRepository.statementFinished();
+            closeAll(ps, conn);
+            return Stream.empty();
+        }
+
+        ResultSet results = rs;
+        Spliterator<T> rows = new Spliterators.AbstractSpliterator<T>(
+                Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                try {
+                    if (!results.next()) {
+                        return false;
+                    }
+                    action.accept(rowMapper.mapRow(results));
+                    return true;
+                } catch (SQLException sqlException) {
+                    logQueryException(sqlException);
+                    return false;
+                }
+            }
+        };
+
+        AutoCloseable[] resources = {results, ps, conn};
+        return StreamSupport.stream(rows, false).onClose(() -> {
+            AsyncRepository.statementFinished();
+            closeAll(resources);
+        });
+    }
+
+    /**
+     * Takes the query in the builder object and passes each row, mapped with the given
+     * row mapper, to the consumer as it is read. Nothing is kept once the consumer returns.
+     *
+     * @param rowMapper maps the current row of the result set to an object
+     * @param consumer called with each mapped row in order
+     * @param <T> type each row is mapped to
+     */
+    public <T> void forEach(RowMapper<T> rowMapper, Consumer<? super T> consumer) {
+        try (Stream<T> rows = buildStream(rowMapper)) {
+            rows.forEach(consumer);
+        }
+    }
+
+    /**
+     * Logs an exception from running a query, which is expected rather than an error
+     * if the query was cancelled because its result is no longer wanted.
+     *
+     * @param sqlException exception thrown while running the query
+     */
+    private void logQueryException(SQLException sqlException) {
+        if (AsyncRepository.isCurrentTaskCancelled()) {
+            log.info("Query cancelled: " + query.toString().trim());
+        } else {
+            log.error(sqlException);
+        }
+    }
+
+    /**
+     * Closes each resource in order, logging rather than throwing any failure.
+     *
+     * @param resources result sets, statements and connections to close, may be null
+     */
+    private void closeAll(AutoCloseable... resources) {
+        for (AutoCloseable resource : resources) {
+            if (resource == null) {
+                continue;
+            }
+            try {
+                resource.close();
+            } catch (Exception exception) {
+                log.error(exception);
+            }
+        }
+    }
+
+    /**
+     * Maps the current row as a Crash, Favourite, or HashMap depending on what was selected.
+     *
+     * @param rs Result set from query.
+     * @return Object for the current row.
+     */
+    private Object resultAsObject(ResultSet rs) {
+        if (allColumnsFromTable) {
+            if (table.equals("crashes")) {
+                return resultsAsCrash(rs);
+            } else if (table.equals("favourites")) {
+                return resultsAsFavourite(rs);
+            }
+            return null;
+        }
+        return resultAsHashmap(rs);
+    }
+
     /**
      * Takes in a result set from query and returns the current row as a Hashmap.
      *
@@ -395,5 +624,14 @@ public class SqliteQueryBuilder {
         return query.toString();
     }
 
+    /**
+     * Getter method for the values bound to the query's placeholders.
+     *
+     * @return list of parameters in placeholder order
+     */
+    public List<Object> getParameters() {
+        return parameters;
+    }
+
 
 }
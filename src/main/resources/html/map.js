@@ -2,15 +2,13 @@ let map, baseLayer, heatmapLayer, markerLayer, drawnItems, drawControl, layerGro
 var javaScriptBridge; // must be declared as var (will not be correctly assigned in java with let keyword)
 let markers = [];
 var routes = [];
-let markersShowing, heatmapShowing;
 
 const cfg = {
-    // radius should be small ONLY if scaleRadius is true (or small radius is intended)
-    // if scaleRadius is false it will be the constant radius used in pixels
-    "radius": 0.1,
+    // constant radius in pixels, a little wider than the 16 pixel cells java sends so they blend
+    "radius": 24,
     "maxOpacity": .4,
-    // scales the radius based on map zoom
-    "scaleRadius": true,
+    // the cells are the same size on screen at every zoom, so the radius is not scaled
+    "scaleRadius": false,
     // if set to false the heatmap uses the global maximum for colorization
     // if activated: uses the data maximum within the current map boundaries
     //   (there will always be a red spot with useLocalExtremas true)
@@ -28,6 +26,12 @@ var testData = {
     data: []
 }
 
+// Layer of crash markers for each map tile in view, by tile number
+const tileLayers = new Map();
+// Markers of single crashes by object id, reused when a crash comes back into view
+const crashMarkers = new Map();
+const maxCachedCrashMarkers = 5000;
+
 /**
  * This object can be returned to our java code, where we can call the functions we define inside it
  */
@@ -42,10 +46,9 @@ let jsConnector = {
     changeDrawingColourToRating: changeDrawingColourToRating,
     updateView: updateView,
     updateReviewContent: updateReviewContent,
-    runDataUpdate: runDataUpdate,
-    panToLocation: panToLocation,
-    runDataUpdate: runDataUpdate,
-    resetLayers: resetLayers
+    updateHeatmap: updateHeatmap,
+    updateMarkers: updateMarkers,
+    panToLocation: panToLocation
 };
 
 /**
@@ -115,25 +118,8 @@ function initMap() {
 
     // Setup potential layers for views
     heatmapLayer = new HeatmapOverlay(cfg);
-    markerLayer = L.markerClusterGroup({
-        iconCreateFunction: function (cluster) {
-            var averageSeverity = calculateAverageSeverity(cluster);
-            var clusterColor = getColorBasedOnSeverity(averageSeverity);
-
-
-            return L.divIcon({
-                html: '<div class="markers-style ' + clusterColor +
-                    (cluster.getChildCount() > 100000 ? ' extra-large-number' : cluster.getChildCount() > 10000 ? ' large-number' : '') +
-                    '">' +
-                    '<span class="cluster-text">' + cluster.getChildCount() + '</span>' +
-                    '</div>',
-                className: 'marker-style',
-                iconSize: L.point(32, 32)
-            });
-
-
-        }
-    });
+    // Crashes are clustered in java, which sends the clusters in view each time the map moves
+    markerLayer = L.layerGroup();
 
     drawnItems = new L.FeatureGroup();
     drawControl = new L.Control.Draw({
@@ -160,6 +146,7 @@ function initMap() {
     map.on('moveend', updateEnabled);
     map.on('zoomend', setFilteringViewport);
     map.on('moveend', setFilteringViewport);
+    map.on('moveend', requestMapData);
     window.addEventListener('resize', newHeatmap);
 
     mapIsReady();
@@ -186,33 +173,146 @@ function updateDataShown() {
     updateView();
 }
 
-function runDataUpdate(script) {
-    eval(script);
-}
+/**
+ * Replaces the heatmap with the grid cells in a payload packed by CrashPayload in java
+ * Each cell is one point weighted by the total severity of its crashes
+ * @param payload base64 encoded heatmap cell arrays
+ */
+function updateHeatmap(payload) {
+    const cells = decodeHeatmap(payload);
 
-function mapIsReady() {
-    javaScriptBridge.mapLoaded();
+    testData.max = cells.max;
+    testData.data = [];
+    for (let i = 0; i < cells.count; i++) {
+        // Cells denser than the max are drawn at full intensity, as heatmap.js does not clamp them
+        testData.data.push({"lat": cells.latitudes[i], "lng": cells.longitudes[i],
+            "count": Math.min(cells.weights[i], cells.max)});
+    }
+    heatmapLayer.setData(testData);
 }
 
-function adjustHeatmapRadiusBasedOnZoom() {
-    let zoomLevel = map.getZoom();
+/**
+ * Applies a marker update packed by CrashPayload in java, dropping the tiles that have left the
+ * viewport and adding the clusters on the tiles that have come into view
+ * @param payload base64 encoded marker update
+ * @param weatherNamesJson JSON array of weather names, indexed by the weather codes in the payload
+ */
+function updateMarkers(payload, weatherNamesJson) {
+    const update = decodeMarkerUpdate(payload);
+    const weatherNames = JSON.parse(weatherNamesJson);
+
+    if (update.tilesReset) {
+        markerLayer.clearLayers();
+        tileLayers.clear();
+    }
+    if (update.crashesChanged || crashMarkers.size > maxCachedCrashMarkers) {
+        crashMarkers.clear();
+    }
+    for (const tile of update.removedTiles) {
+        if (tileLayers.has(tile)) {
+            markerLayer.removeLayer(tileLayers.get(tile));
+            tileLayers.delete(tile);
+        }
+    }
 
-    let newRadius;
-    if (zoomLevel >= 17) {
-        newRadius = 0.0002;  // For street-level detail
-    } else if (zoomLevel >= 15 && zoomLevel < 17) {
-        newRadius = 0.001; // For street-level detail
-    } else if (zoomLevel >= 13) {
-        newRadius = 0.005;  // For neighborhood-level detail
+    let i = 0;
+    for (let tile = 0; tile < update.addedTiles.length; tile++) {
+        const tileLayer = L.layerGroup();
+        for (const end = i + update.tileSizes[tile]; i < end; i++) {
+            if (update.objectIds[i] >= 0) {
+                tileLayer.addLayer(getCrashMarker(update.objectIds[i], update.latitudes[i],
+                    update.longitudes[i], update.severities[i], update.years[i],
+                    weatherNames[update.weathers[i]]));
+            } else {
+                tileLayer.addLayer(createClusterMarker(update.latitudes[i], update.longitudes[i],
+                    update.counts[i], update.severities[i], update.expansionZooms[i]));
+            }
+        }
+        tileLayers.set(update.addedTiles[tile], tileLayer);
+        markerLayer.addLayer(tileLayer);
     }
-    else if (zoomLevel >= 10) {
-        newRadius = 0.01;  // For neighborhood-level detail
-    }  else {
-        newRadius = 0.1;  // For city-level detail
+}
+
+function requestMapData() {
+    javaScriptBridge.updateMapData();
+}
+
+/**
+ * Copies a base64 payload into a buffer
+ * Typed arrays over it use the platform's byte order, which is little endian like the payload on
+ * all platforms the app runs on
+ * @param payload base64 encoded arrays
+ * @returns {Uint8Array} bytes of the payload
+ */
+function decodePayload(payload) {
+    const binary = atob(payload);
+    const bytes = new Uint8Array(binary.length);
+    for (let i = 0; i < binary.length; i++) {
+        bytes[i] = binary.charCodeAt(i);
     }
+    return bytes;
+}
 
-    heatmapLayer.cfg.radius = newRadius;
+/**
+ * Reads the tile and cluster arrays out of a marker update without copying them
+ * @param payload base64 encoded marker update
+ * @returns {{tilesReset: boolean, crashesChanged: boolean, removedTiles: Float64Array,
+ *     addedTiles: Float64Array, tileSizes: Int32Array, count: number, latitudes: Float32Array,
+ *     longitudes: Float32Array, counts: Int32Array, severities: Float32Array,
+ *     objectIds: Int32Array, years: Int16Array, expansionZooms: Int8Array, weathers: Int8Array}}
+ */
+function decodeMarkerUpdate(payload) {
+    const bytes = decodePayload(payload);
+    const [flags, removedCount, addedCount, count] = new Int32Array(bytes.buffer, 0, 4);
+    let offset = 16;
+    const removedTiles = new Float64Array(bytes.buffer, offset, removedCount);
+    offset += 8 * removedCount;
+    const addedTiles = new Float64Array(bytes.buffer, offset, addedCount);
+    offset += 8 * addedCount;
+    const tileSizes = new Int32Array(bytes.buffer, offset, addedCount);
+    offset += 4 * addedCount;
+    const latitudes = new Float32Array(bytes.buffer, offset, count);
+    offset += 4 * count;
+    const longitudes = new Float32Array(bytes.buffer, offset, count);
+    offset += 4 * count;
+    const counts = new Int32Array(bytes.buffer, offset, count);
+    offset += 4 * count;
+    const severities = new Float32Array(bytes.buffer, offset, count);
+    offset += 4 * count;
+    const objectIds = new Int32Array(bytes.buffer, offset, count);
+    offset += 4 * count;
+    const years = new Int16Array(bytes.buffer, offset, count);
+    offset += 2 * count;
+    const expansionZooms = new Int8Array(bytes.buffer, offset, count);
+    offset += count;
+    const weathers = new Int8Array(bytes.buffer, offset, count);
+    return {tilesReset: (flags & 1) !== 0, crashesChanged: (flags & 2) !== 0, removedTiles,
+        addedTiles, tileSizes, count, latitudes, longitudes, counts, severities, objectIds, years,
+        expansionZooms, weathers};
+}
 
+/**
+ * Reads the heatmap cell arrays out of a payload without copying them
+ * @param payload base64 encoded heatmap cell arrays
+ * @returns {{count: number, max: number, latitudes: Float32Array, longitudes: Float32Array,
+ *     weights: Float32Array}}
+ */
+function decodeHeatmap(payload) {
+    const bytes = decodePayload(payload);
+    const view = new DataView(bytes.buffer);
+    const count = view.getInt32(0, true);
+    const max = view.getFloat32(4, true);
+    let offset = 8;
+    const latitudes = new Float32Array(bytes.buffer, offset, count);
+    offset += 4 * count;
+    const longitudes = new Float32Array(bytes.buffer, offset, count);
+    offset += 4 * count;
+    const weights = new Float32Array(bytes.buffer, offset, count);
+    return {count, max, latitudes, longitudes, weights};
+}
+
+function mapIsReady() {
+    javaScriptBridge.mapLoaded();
 }
 
 function setFilteringViewport() {
@@ -222,6 +322,7 @@ function setFilteringViewport() {
     const maxLatitude = bounds.getNorth();
     const maxLongitude = bounds.getEast();
     javaScriptBridge.setFilterManagerViewport(minLatitude, minLongitude, maxLatitude, maxLongitude);
+    javaScriptBridge.setMapZoom(map.getZoom());
 }
 
 function automaticViewChange() {
@@ -244,11 +345,6 @@ function automaticViewChange() {
     }
 }
 
-function radiusChangeOnMapInteraction() {
-    adjustHeatmapRadiusBasedOnZoom();
-    map.on('zoomend', adjustHeatmapRadiusBasedOnZoom);
-}
-
 /**
  * Updates the view according to the user selection
  * Three views available:
@@ -261,10 +357,8 @@ function updateView() {
 
     if (currentView === "Automatic") {
         automaticViewChange();
-        radiusChangeOnMapInteraction();
         map.on('zoomend', automaticViewChange);
     } else if (currentView === "Heatmap") {
-        radiusChangeOnMapInteraction();
         map.off('zoomend', automaticViewChange);
 
         if (layerGroup.hasLayer(markerLayer)) {
@@ -274,7 +368,6 @@ function updateView() {
             layerGroup.addLayer(heatmapLayer);
         }
     } else if (currentView === "Crash Locations") {
-        map.off('zoomend', adjustHeatmapRadiusBasedOnZoom);
         map.off('zoomend', automaticViewChange);
 
         if (layerGroup.hasLayer(heatmapLayer)) {
@@ -284,7 +377,6 @@ function updateView() {
             layerGroup.addLayer(markerLayer);
         }
     } else if (currentView === "Heatmap & Crash Locations") {
-        radiusChangeOnMapInteraction();
         map.off('zoomend', automaticViewChange);
 
         if (!layerGroup.hasLayer(heatmapLayer)) {
@@ -295,7 +387,6 @@ function updateView() {
         }
     } else {
         // Default with "None" showing
-        map.off('zoomend', adjustHeatmapRadiusBasedOnZoom);
         map.off('zoomend', automaticViewChange);
 
         if (layerGroup.hasLayer(heatmapLayer)) {
@@ -510,66 +601,50 @@ function getColorBasedOnSeverity(averageSeverity) {
 }
 
 
-function calculateAverageSeverity(cluster) {
-    var childMarkers = cluster.getAllChildMarkers();
-    if (childMarkers == 0) {
-        return 0;
-    }
-    var totalSeverity = 0;
-
-    // Calculate the total severity within the cluster
-    for (var i = 0; i < childMarkers.length; i++) {
-        totalSeverity += childMarkers[i].options.severity;
-    }
-
+function calculateAverageSeverity(averageSeverity) {
     // Score out of 10
-    return ((totalSeverity / childMarkers.length - 1.0) / 7.0) * 10.0;
+    return ((averageSeverity - 1.0) / 7.0) * 10.0;
 }
 
-function resetLayers() {
-
-    // Set booleans for later use to see if layers should be added back
-    markersShowing = layerGroup.hasLayer(markerLayer);
-    heatmapShowing = layerGroup.hasLayer(heatmapLayer);
-
-    // Clears all layers so nothing is showing to slow loading down
-    layerGroup.eachLayer(function (layer) {
-        layerGroup.removeLayer(layer);
+function createClusterMarker(lat, lng, count, averageSeverity, expansionZoom) {
+    const clusterColor = getColorBasedOnSeverity(calculateAverageSeverity(averageSeverity));
+    const icon = L.divIcon({
+        html: '<div class="markers-style ' + clusterColor +
+            (count > 100000 ? ' extra-large-number' : count > 10000 ? ' large-number' : '') +
+            '">' +
+            '<span class="cluster-text">' + count + '</span>' +
+            '</div>',
+        className: 'marker-style',
+        iconSize: L.point(32, 32)
     });
+    const marker = L.marker(new L.LatLng(lat, lng), {icon: icon});
+    marker.on('click', function () {
+        map.setView([lat, lng], expansionZoom);
+    });
+    return marker;
+}
 
-    // Emptying heatmap testData data list and markerLayer's markers
-    testData.data = [];
-    heatmapLayer.setData(testData);
-    markerLayer.clearLayers();
+function getCrashMarker(objectId, lat, lng, severity, year, weather) {
+    if (!crashMarkers.has(objectId)) {
+        crashMarkers.set(objectId, createCrashMarker(lat, lng, severity, year, weather));
+    }
+    return crashMarkers.get(objectId);
 }
 
-function addPoint(lat, lng, severity, year, weather) {
+function createCrashMarker(lat, lng, severity, year, weather) {
     const severityString = getSeverityStringFromValue(severity);
     const markerIcon = getMarkerIcon(severity);
     var marker = L.marker(new L.LatLng(lat, lng), {title: severityString, icon: markerIcon, severity: severity});
-    marker.bindPopup("<div style='font-size: 16px;' class='popup-content'>" +
-        "<p><strong>Latitude:</strong> " + lat + "</p>" +
-        "<p><strong>Longitude:</strong> " + lng + "</p>" +
+    // Built when the popup first opens, rather than for every crash on each update
+    marker.bindPopup(() => "<div style='font-size: 16px;' class='popup-content'>" +
+        "<p><strong>Latitude:</strong> " + lat.toFixed(4) + "</p>" +
+        "<p><strong>Longitude:</strong> " + lng.toFixed(4) + "</p>" +
         "<p><strong>Severity:</strong> " + severityString + "</p>" +
         "<p><strong>Year:</strong> " + year + "</p>" + // Add year
         "<p><strong>Weather:</strong> " + weather + "</p>" + // Add weather
         "</div>"
     );
-    markerLayer.addLayer(marker);
-    testData.data.push({"lat": lat, "lng": lng});
-}
-
-function showLayers() {
-    heatmapLayer.setData(testData);
-
-    // Adding layers back based on resetLayers function
-    // state with what layers were showing
-    if (markersShowing) {
-        layerGroup.addLayer(markerLayer);
-    }
-    if (heatmapShowing) {
-        layerGroup.addLayer(heatmapLayer);
-    }
+    return marker;
 }
 
 function drawingModeOn() {
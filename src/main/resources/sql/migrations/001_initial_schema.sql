@@ -1,5 +1,3 @@
-DROP TABLE IF EXISTS crashes;
---SPLIT
 CREATE TABLE IF NOT EXISTS crashes (
      object_id INTEGER PRIMARY KEY AUTOINCREMENT,
      speed_limit INTEGER,
@@ -23,16 +21,12 @@ CREATE TABLE IF NOT EXISTS crashes (
      train_involved BOOLEAN,
      truck_involved BOOLEAN);
 --SPLIT
-DROP TABLE IF EXISTS rtree_index;
---SPLIT
-CREATE VIRTUAL TABLE rtree_index USING rtree(
+CREATE VIRTUAL TABLE IF NOT EXISTS rtree_index USING rtree(
     id,
     minX, maxX,
     minY, maxY
 );
 --SPLIT
-DROP TABLE IF EXISTS favourites;
---SPLIT
 CREATE TABLE IF NOT EXISTS favourites (
      id INTEGER PRIMARY KEY AUTOINCREMENT,
      start_address TEXT,
@@ -0,0 +1,35 @@
+CREATE INDEX IF NOT EXISTS idx_crashes_year_severity ON crashes (crash_year, severity);
+--SPLIT
+CREATE INDEX IF NOT EXISTS idx_crashes_severity_year ON crashes (severity, crash_year);
+--SPLIT
+CREATE INDEX IF NOT EXISTS idx_crashes_region_year ON crashes (region, crash_year);
+--SPLIT
+CREATE INDEX IF NOT EXISTS idx_crashes_weather_year ON crashes (weather, crash_year);
+--SPLIT
+CREATE INDEX IF NOT EXISTS idx_crashes_holiday_year ON crashes (holiday, crash_year);
+--SPLIT
+CREATE INDEX IF NOT EXISTS idx_crashes_bicycle ON crashes (crash_year)
+    WHERE bicycle_involved = 1;
+--SPLIT
+CREATE INDEX IF NOT EXISTS idx_crashes_bus ON crashes (crash_year)
+    WHERE bus_involved = 1;
+--SPLIT
+CREATE INDEX IF NOT EXISTS idx_crashes_moped ON crashes (crash_year)
+    WHERE moped_involved = 1;
+--SPLIT
+CREATE INDEX IF NOT EXISTS idx_crashes_motorcycle ON crashes (crash_year)
+    WHERE motorcycle_involved = 1;
+--SPLIT
+CREATE INDEX IF NOT EXISTS idx_crashes_pedestrian ON crashes (crash_year)
+    WHERE pedestrian_involved = 1;
+--SPLIT
+CREATE INDEX IF NOT EXISTS idx_crashes_school_bus ON crashes (crash_year)
+    WHERE school_bus_involved = 1;
+--SPLIT
+CREATE INDEX IF NOT EXISTS idx_crashes_train ON crashes (crash_year)
+    WHERE train_involved = 1;
+--SPLIT
+CREATE INDEX IF NOT EXISTS idx_crashes_truck ON crashes (crash_year)
+    WHERE truck_involved = 1;
+--SPLIT
+CREATE INDEX IF NOT EXISTS idx_favourites_route_name ON favourites (route_name);
\ No newline at end of file
@@ -0,0 +1,22 @@
+DROP TRIGGER IF EXISTS insert_crash;
+--SPLIT
+CREATE TRIGGER IF NOT EXISTS crashes_rtree_insert AFTER INSERT ON crashes BEGIN
+    INSERT OR REPLACE INTO rtree_index(id, minX, maxX, minY, maxY)
+    VALUES (NEW.object_id, NEW.longitude, NEW.longitude, NEW.latitude, NEW.latitude);
+END;
+--SPLIT
+CREATE TRIGGER IF NOT EXISTS crashes_rtree_update
+AFTER UPDATE OF object_id, longitude, latitude ON crashes BEGIN
+    DELETE FROM rtree_index WHERE id = OLD.object_id;
+    INSERT OR REPLACE INTO rtree_index(id, minX, maxX, minY, maxY)
+    VALUES (NEW.object_id, NEW.longitude, NEW.longitude, NEW.latitude, NEW.latitude);
+END;
+--SPLIT
+CREATE TRIGGER IF NOT EXISTS crashes_rtree_delete AFTER DELETE ON crashes BEGIN
+    DELETE FROM rtree_index WHERE id = OLD.object_id;
+END;
+--SPLIT
+DELETE FROM rtree_index;
+--SPLIT
+INSERT INTO rtree_index(id, minX, maxX, minY, maxY)
+    SELECT object_id, longitude, longitude, latitude, latitude FROM crashes;
@@ -0,0 +1,14 @@
+DROP TRIGGER IF EXISTS crashes_rtree_updateAFTER;
+--SPLIT
+DROP TRIGGER IF EXISTS crashes_rtree_update;
+--SPLIT
+CREATE TRIGGER IF NOT EXISTS crashes_rtree_update
+    AFTER UPDATE OF object_id, longitude, latitude ON crashes
+    WHEN OLD.object_id IS NOT NEW.object_id
+        OR OLD.longitude IS NOT NEW.longitude
+        OR OLD.latitude IS NOT NEW.latitude
+    BEGIN
+    DELETE FROM rtree_index WHERE id = OLD.object_id;
+    INSERT OR REPLACE INTO rtree_index(id, minX, maxX, minY, maxY)
+    VALUES (NEW.object_id, NEW.longitude, NEW.longitude, NEW.latitude, NEW.latitude);
+END;
@@ -0,0 +1,7 @@
+DROP TABLE IF EXISTS crashes;
+--SPLIT
+DROP TABLE IF EXISTS rtree_index;
+--SPLIT
+DROP TABLE IF EXISTS favourites;
+--SPLIT
+PRAGMA user_version = 0;
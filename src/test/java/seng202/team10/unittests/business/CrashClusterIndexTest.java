@@ -0,0 +1,147 @@
+package seng202.team10.unittests.business;
+
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import seng202.team10.business.CrashClusterIndex;
+import seng202.team10.models.CrashCluster;
+import seng202.team10.models.CrashPoint;
+import seng202.team10.models.HeatmapCell;
+import seng202.team10.models.Weather;
+
+/**
+ * Testing CrashClusterIndex class.
+ *
+ * @author Team 10
+ */
+public class CrashClusterIndexTest {
+
+    // Two crashes about 100 m apart in Christchurch and one in Auckland
+    private static final List<CrashPoint> CRASHES = List.of(
+            new CrashPoint(1, -43.5300, 172.6300, 1, 2020, Weather.FINE),
+            new CrashPoint(2, -43.5309, 172.6300, 64, 2021, Weather.SNOW),
+            new CrashPoint(3, -36.8500, 174.7600, 4, 2022, Weather.FINE));
+
+    private final CrashClusterIndex index = new CrashClusterIndex(CRASHES);
+
+    private List<CrashCluster> everywhere(int zoom) {
+        return index.getClusters(-90, -180, 90, 180, zoom);
+    }
+
+    /**
+     * Tests every crash is in exactly one cluster at every zoom.
+     */
+    @Test
+    void testCountsAddUp() {
+        for (int zoom = 0; zoom <= CrashClusterIndex.MAX_CLUSTER_ZOOM + 2; zoom++) {
+            Assertions.assertEquals(CRASHES.size(), everywhere(zoom).stream()
+                    .mapToInt(CrashCluster::count).sum(), "zoom " + zoom);
+        }
+    }
+
+    /**
+     * Tests nearby crashes are clustered when zoomed out, with their average severity,
+     * and split up at the cluster's expansion zoom.
+     */
+    @Test
+    void testNearbyCrashesCluster() {
+        List<CrashCluster> clusters = index.getClusters(-44, 172, -43, 173, 8);
+        Assertions.assertEquals(1, clusters.size());
+        CrashCluster cluster = clusters.get(0);
+        Assertions.assertEquals(2, cluster.count());
+        Assertions.assertNull(cluster.crash());
+        Assertions.assertEquals(32.5, cluster.averageSeverity(), 1e-9);
+        Assertions.assertEquals(-43.53045, cluster.latitude(), 1e-4);
+        Assertions.assertTrue(cluster.expansionZoom() > 8);
+
+        List<CrashCluster> expanded = index.getClusters(-44, 172, -43, 173,
+                cluster.expansionZoom());
+        Assertions.assertEquals(2, expanded.size());
+        Assertions.assertTrue(expanded.stream().allMatch(split -> split.crash() != null));
+    }
+
+    /**
+     * Tests a crash on its own is returned with its details.
+     */
+    @Test
+    void testSingleCrash() {
+        List<CrashCluster> clusters = index.getClusters(-37, 174, -36, 175, 5);
+        Assertions.assertEquals(1, clusters.size());
+        Assertions.assertEquals(CRASHES.get(2), clusters.get(0).crash());
+        Assertions.assertEquals(4, clusters.get(0).averageSeverity(), 1e-9);
+    }
+
+    /**
+     * Tests clusters are grouped by the tile they fall on, with whole tiles returned for
+     * a viewport that only partly covers them.
+     */
+    @Test
+    void testClustersByTile() {
+        for (int zoom = 0; zoom <= CrashClusterIndex.MAX_CLUSTER_ZOOM + 2; zoom++) {
+            Map<Long, List<CrashCluster>> byTile = index.getClustersByTile(-90, -180, 90, 180,
+                    zoom);
+            Assertions.assertEquals(CRASHES.size(), byTile.values().stream()
+                    .flatMap(List::stream).mapToInt(CrashCluster::count).sum(), "zoom " + zoom);
+        }
+
+        Map<Long, List<CrashCluster>> christchurch = index.getClustersByTile(-43.5302,
+                172.6299, -43.5301, 172.6301, CrashClusterIndex.MAX_CLUSTER_ZOOM + 2);
+        Assertions.assertEquals(1, christchurch.size());
+        Assertions.assertEquals(CRASHES.get(0),
+                christchurch.values().iterator().next().get(0).crash());
+        Assertions.assertEquals(2, index.getClustersByTile(-44, 172, -36, 175, 5).size());
+    }
+
+    /**
+     * Tests every crash adds its severity to exactly one heatmap cell at every zoom.
+     */
+    @Test
+    void testHeatmapWeightsAddUp() {
+        for (int zoom = 0; zoom <= CrashClusterIndex.MAX_CLUSTER_ZOOM + 2; zoom++) {
+            List<HeatmapCell> cells = index.getHeatmapCells(-90, -180, 90, 180, zoom);
+            Assertions.assertEquals(69, cells.stream().mapToLong(HeatmapCell::severitySum).sum(),
+                    "zoom " + zoom);
+            Assertions.assertEquals(CRASHES.size(), cells.stream()
+                    .mapToInt(HeatmapCell::count).sum(), "zoom " + zoom);
+            Assertions.assertTrue(index.getHeatmapMax(zoom) > 0, "zoom " + zoom);
+        }
+    }
+
+    /**
+     * Tests heatmap cells are finer than clusters, so nearby crashes share a cell only
+     * further out, and are returned one by one once zoomed in.
+     */
+    @Test
+    void testHeatmapCellsInView() {
+        List<HeatmapCell> cells = index.getHeatmapCells(-44, 172, -43, 173, 8);
+        Assertions.assertEquals(1, cells.size());
+        Assertions.assertEquals(65, cells.get(0).severitySum());
+        Assertions.assertEquals(2, cells.get(0).count());
+
+        cells = index.getHeatmapCells(-43.5305, 172.62, -43.52, 172.64,
+                CrashClusterIndex.MAX_CLUSTER_ZOOM - 1);
+        Assertions.assertEquals(1, cells.size());
+        Assertions.assertEquals(1, cells.get(0).severitySum());
+    }
+
+    /**
+     * Tests crashes past the deepest cluster zoom are returned one by one, only if in view.
+     */
+    @Test
+    void testPastMaxClusterZoom() {
+        List<CrashCluster> clusters = index.getClusters(-43.5305, 172.62, -43.52, 172.64,
+                CrashClusterIndex.MAX_CLUSTER_ZOOM + 1);
+        Assertions.assertEquals(1, clusters.size());
+        Assertions.assertEquals(CRASHES.get(0), clusters.get(0).crash());
+    }
+
+    /**
+     * Tests an empty list of crashes has no clusters.
+     */
+    @Test
+    void testEmpty() {
+        Assertions.assertTrue(new CrashClusterIndex(List.of())
+                .getClusters(-90, -180, 90, 180, 10).isEmpty());
+    }
+}
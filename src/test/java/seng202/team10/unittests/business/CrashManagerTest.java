@@ -1,10 +1,20 @@
 package seng202.team10.unittests.business;
 
+import java.io.File;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
 import org.junit.Assert;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import seng202.team10.business.CrashManager;
 import seng202.team10.business.FilterManager;
+import seng202.team10.business.ImportProgress;
+import seng202.team10.exceptions.DataImportException;
+import seng202.team10.io.CrashCsvImporter;
+import seng202.team10.repository.DatabaseManager;
+import seng202.team10.repository.SqliteQueryBuilder;
 
 
 /**
@@ -31,4 +41,138 @@ public class CrashManagerTest {
         Assertions.assertEquals(filterString, filters.toString());
     }
 
+    /**
+     * Tests progress is reported after each chunk and a cancelled import keeps exactly
+     * the chunks committed before it was cancelled.
+     */
+    @Test
+    void testCancelledImportKeepsCommittedChunks() throws DataImportException {
+        DatabaseManager.getInstance().resetDb();
+        URL url = Thread.currentThread().getContextClassLoader()
+                .getResource("files/random_5_crashes.csv");
+        List<ImportProgress> reports = new ArrayList<>();
+
+        System.setProperty("database.importChunkSize", "2");
+        try {
+            Assertions.assertThrows(CancellationException.class, () ->
+                    new CrashManager().addAllCrashesFromFiles(new CrashCsvImporter(),
+                            List.of(new File(url.getPath())), false, () -> !reports.isEmpty(),
+                            reports::add));
+        } finally {
+            System.clearProperty("database.importChunkSize");
+        }
+
+        Assertions.assertEquals(1, reports.size());
+        Assertions.assertEquals(2, reports.get(0).parsed());
+        Assertions.assertEquals(2, reports.get(0).written());
+        Assertions.assertEquals(0, reports.get(0).rejected());
+        List<Integer> count = SqliteQueryBuilder.create().select("COUNT(*)").from("crashes")
+                .buildGetter(rs -> rs.getInt(1));
+        Assertions.assertEquals(List.of(2), count);
+        DatabaseManager.getInstance().resetDb();
+    }
+
+    /**
+     * Tests importing a file twice by default adds its crashes again under new ids.
+     */
+    @Test
+    void testReimportAddsNewCrashes() throws DataImportException {
+        DatabaseManager.getInstance().resetDb();
+        File file = new File(Thread.currentThread().getContextClassLoader()
+                .getResource("files/random_5_crashes.csv").getPath());
+
+        new CrashManager().addAllCrashesFromFile(new CrashCsvImporter(), file);
+        new CrashManager().addAllCrashesFromFile(new CrashCsvImporter(), file);
+
+        Assertions.assertEquals(List.of(10), countCrashes());
+        DatabaseManager.getInstance().resetDb();
+    }
+
+    /**
+     * Tests importing a file twice keyed on OBJECTID leaves the database unchanged and
+     * writes nothing the second time.
+     */
+    @Test
+    void testReimportUpdatingExistingWritesNothing() throws DataImportException {
+        DatabaseManager.getInstance().resetDb();
+        List<File> files = List.of(new File(Thread.currentThread().getContextClassLoader()
+                .getResource("files/random_5_crashes.csv").getPath()));
+
+        new CrashManager().addAllCrashesFromFiles(new CrashCsvImporter(), files, true,
+                () -> false, progress -> { });
+        ImportProgress again = new CrashManager().addAllCrashesFromFiles(
+                new CrashCsvImporter(), files, true, () -> false, progress -> { });
+
+        Assertions.assertEquals(5, again.parsed());
+        Assertions.assertEquals(0, again.written());
+        Assertions.assertEquals(List.of(5), countCrashes());
+        DatabaseManager.getInstance().resetDb();
+    }
+
+    /**
+     * Tests a large re-import of a file already in the database keeps the triggers
+     * maintaining the indexes row by row instead of bulk loading.
+     */
+    @Test
+    void testLargeReimportKeepsTriggers() throws DataImportException {
+        DatabaseManager.getInstance().resetDb();
+        File file = getFile("files/crash_data_10k.csv");
+        new CrashManager().addAllCrashesFromFile(new CrashCsvImporter(), file);
+
+        List<Integer> missingTriggers = importCountingMissingTriggers(file);
+
+        Assertions.assertFalse(missingTriggers.isEmpty());
+        Assertions.assertTrue(missingTriggers.stream().allMatch(missing -> missing == 0),
+                missingTriggers.toString());
+        Assertions.assertTrue(DatabaseManager.getInstance().getIndexManager()
+                .isSpatialIndexConsistent());
+        DatabaseManager.getInstance().resetDb();
+    }
+
+    /**
+     * Tests a large import into a much smaller table is bulk loaded without triggers.
+     */
+    @Test
+    void testLargeImportIntoSmallTableBulkLoads() throws DataImportException {
+        DatabaseManager.getInstance().resetDb();
+        new CrashManager().addAllCrashesFromFile(new CrashCsvImporter(),
+                getFile("files/random_5_crashes.csv"));
+
+        List<Integer> missingTriggers = importCountingMissingTriggers(
+                getFile("files/crash_data_10k.csv"));
+
+        Assertions.assertFalse(missingTriggers.isEmpty());
+        Assertions.assertTrue(missingTriggers.stream().allMatch(missing -> missing > 0),
+                missingTriggers.toString());
+        Assertions.assertTrue(DatabaseManager.getInstance().getIndexManager()
+                .findMissingTriggers().isEmpty());
+        DatabaseManager.getInstance().resetDb();
+    }
+
+    /**
+     * Imports a file with any import size allowed to bulk load, counting the missing
+     * crash triggers after each chunk is committed.
+     */
+    private List<Integer> importCountingMissingTriggers(File file) throws DataImportException {
+        List<Integer> missingTriggers = new ArrayList<>();
+        System.setProperty("database.bulkLoadMinBytes", "1");
+        try {
+            new CrashManager().addAllCrashesFromFiles(new CrashCsvImporter(), List.of(file),
+                    false, () -> false, progress -> missingTriggers.add(DatabaseManager
+                            .getInstance().getIndexManager().findMissingTriggers().size()));
+        } finally {
+            System.clearProperty("database.bulkLoadMinBytes");
+        }
+        return missingTriggers;
+    }
+
+    private File getFile(String name) {
+        return new File(Thread.currentThread().getContextClassLoader()
+                .getResource(name).getPath());
+    }
+
+    private List<Integer> countCrashes() {
+        return SqliteQueryBuilder.create().select("COUNT(*)").from("crashes")
+                .buildGetter(rs -> rs.getInt(1));
+    }
 }
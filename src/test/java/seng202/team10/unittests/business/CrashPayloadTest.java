@@ -0,0 +1,100 @@
+package seng202.team10.unittests.business;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import seng202.team10.business.CrashPayload;
+import seng202.team10.models.CrashCluster;
+import seng202.team10.models.CrashPoint;
+import seng202.team10.models.HeatmapCell;
+import seng202.team10.models.MarkerUpdate;
+import seng202.team10.models.Weather;
+
+/**
+ * Testing CrashPayload class.
+ *
+ * @author Team 10
+ */
+public class CrashPayloadTest {
+
+    private static final CrashPoint CRASH =
+            new CrashPoint(1, -36.987085, 174.885385, 64, 2001, Weather.FINE);
+
+    /**
+     * Tests tiles are packed before their clusters, and clusters of several crashes are
+     * packed without crash details.
+     */
+    @Test
+    void testEncodeMarkerUpdate() {
+        Map<Long, List<CrashCluster>> addedTiles = new LinkedHashMap<>();
+        addedTiles.put(1L << 35, List.of(new CrashCluster(-43.5, 172.6, 12, 9.5, 11, null)));
+        addedTiles.put(7L, List.of(new CrashCluster(-36.9, 174.9, 1, 64, 17, CRASH)));
+        MarkerUpdate update = new MarkerUpdate(false, true, List.of(3L), addedTiles);
+        ByteBuffer buffer = ByteBuffer.wrap(Base64.getDecoder().decode(
+                CrashPayload.encodeMarkerUpdate(update))).order(ByteOrder.LITTLE_ENDIAN);
+        Assertions.assertEquals(16 + CrashPayload.BYTES_PER_REMOVED_TILE
+                + 2 * CrashPayload.BYTES_PER_ADDED_TILE + 2 * CrashPayload.BYTES_PER_CLUSTER,
+                buffer.remaining());
+
+        Assertions.assertEquals(CrashPayload.CRASHES_CHANGED, buffer.getInt());
+        Assertions.assertEquals(1, buffer.getInt());
+        Assertions.assertEquals(2, buffer.getInt());
+        Assertions.assertEquals(2, buffer.getInt());
+        Assertions.assertEquals(3, buffer.getDouble());
+        Assertions.assertEquals(1L << 35, buffer.getDouble());
+        Assertions.assertEquals(7, buffer.getDouble());
+        Assertions.assertEquals(1, buffer.getInt());
+        Assertions.assertEquals(1, buffer.getInt());
+        buffer.position(buffer.position() + 16);
+        Assertions.assertEquals(12, buffer.getInt());
+        Assertions.assertEquals(1, buffer.getInt());
+        Assertions.assertEquals(9.5, buffer.getFloat(), 1e-6);
+        Assertions.assertEquals(64, buffer.getFloat(), 1e-6);
+        Assertions.assertEquals(-1, buffer.getInt());
+        Assertions.assertEquals(CRASH.objectId(), buffer.getInt());
+        Assertions.assertEquals(0, buffer.getShort());
+        Assertions.assertEquals(2001, buffer.getShort());
+        Assertions.assertEquals(11, buffer.get());
+        Assertions.assertEquals(17, buffer.get());
+        Assertions.assertEquals(-1, buffer.get());
+        Assertions.assertEquals(Weather.FINE.ordinal(), buffer.get());
+    }
+
+    /**
+     * Tests heatmap cells are packed after the weight drawn at full intensity.
+     */
+    @Test
+    void testEncodeHeatmap() {
+        List<HeatmapCell> cells = List.of(
+                new HeatmapCell(-36.987085, 174.885385, 3, 69),
+                new HeatmapCell(-43.53, 172.63, 1, 1));
+        ByteBuffer buffer = ByteBuffer.wrap(Base64.getDecoder().decode(
+                CrashPayload.encodeHeatmap(cells, 40))).order(ByteOrder.LITTLE_ENDIAN);
+        Assertions.assertEquals(8 + 2 * CrashPayload.BYTES_PER_HEATMAP_CELL,
+                buffer.remaining());
+
+        Assertions.assertEquals(2, buffer.getInt());
+        Assertions.assertEquals(40, buffer.getFloat(), 1e-6);
+        Assertions.assertEquals(-36.987085, buffer.getFloat(), 1e-5);
+        Assertions.assertEquals(-43.53, buffer.getFloat(), 1e-5);
+        Assertions.assertEquals(174.885385, buffer.getFloat(), 1e-4);
+        Assertions.assertEquals(172.63, buffer.getFloat(), 1e-4);
+        Assertions.assertEquals(69, buffer.getFloat(), 1e-6);
+        Assertions.assertEquals(1, buffer.getFloat(), 1e-6);
+    }
+
+    /**
+     * Tests an empty update packs to just the flags and counts.
+     */
+    @Test
+    void testEncodeEmpty() {
+        byte[] payload = Base64.getDecoder().decode(CrashPayload.encodeMarkerUpdate(
+                new MarkerUpdate(false, false, List.of(), Map.of())));
+        Assertions.assertArrayEquals(new byte[16], payload);
+    }
+}
@@ -1,8 +1,10 @@
 package seng202.team10.unittests.business;
 
+import java.util.List;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import seng202.team10.business.FilterManager;
+import seng202.team10.repository.QueryCondition;
 
 /**
  * Test FilterManager class.
@@ -33,4 +35,21 @@ public class FilterManagerTest {
         filters.updateFiltersWithQueryString(expectedString);
         Assertions.assertEquals(expectedString, filters.toString());
     }
+
+    @Test
+    void testGetFilterCondition() {
+        FilterManager filters = FilterManager.getInstance();
+        filters.updateFiltersWithQueryString("severity IN (1, 2) AND (bicycle_involved = 1 OR "
+                + "moped_involved = 1) AND crash_year BETWEEN 2000 AND 2023 "
+                + "AND weather IN (\"Fine\") AND region IN (\"Canterbury\") AND holiday IN (0, 1)");
+
+        // Categories with every option selected are prefixed so their indexes are not used
+        String expectedSql = "severity IN (?, ?) AND (bicycle_involved = 1 OR "
+                + "moped_involved = 1) AND +crash_year BETWEEN ? AND ? "
+                + "AND weather IN (?) AND region IN (?) AND +holiday IN (?, ?)";
+        QueryCondition condition = filters.getFilterCondition();
+        Assertions.assertEquals(expectedSql, condition.getSql());
+        Assertions.assertEquals(List.of(1, 2, 2000, 2023, "Fine", "Canterbury", 0, 1),
+                condition.getParameters());
+    }
 }
@@ -7,9 +7,7 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
@@ -18,6 +16,8 @@ import org.mockito.MockitoAnnotations;
 import seng202.team10.business.JavaScriptBridge;
 import seng202.team10.business.SettingsManager;
 import seng202.team10.gui.MainController;
+import seng202.team10.models.CrashPoint;
+import seng202.team10.models.Weather;
 
 
 class JavaScriptBridgeTest {
@@ -41,14 +41,8 @@ class JavaScriptBridgeTest {
     @Test
     void testUpdateCrashesByJavascript() {
         //wont be completed for submission but other tests are related.
-        List<Map<String, Object>> crashList = Arrays.asList(
-                new HashMap<String, Object>() {{
-                    put("latitude", 10.0);
-                    put("longitude", 20.0);
-                    put("severity", 1);
-                    put("crash_year", 2022);
-                    put("weather", "Clear");
-                }}
+        List<CrashPoint> crashList = Arrays.asList(
+                new CrashPoint(1, 10.0, 20.0, 1, 2022, Weather.FINE)
         );
     }
 
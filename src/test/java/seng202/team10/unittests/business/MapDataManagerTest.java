@@ -0,0 +1,104 @@
+package seng202.team10.unittests.business;
+
+import java.io.File;
+import java.net.URL;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import seng202.team10.business.CrashManager;
+import seng202.team10.business.FilterManager;
+import seng202.team10.business.MapDataManager;
+import seng202.team10.exceptions.DataImportException;
+import seng202.team10.io.CrashCsvImporter;
+import seng202.team10.models.CrashPoint;
+import seng202.team10.models.CrashSeverity;
+import seng202.team10.models.MarkerUpdate;
+import seng202.team10.models.Weather;
+import seng202.team10.repository.DatabaseManager;
+
+/**
+ * Testing MapDataManager class.
+ *
+ * @author Team 10
+ */
+public class MapDataManagerTest {
+
+    private final FilterManager filters = FilterManager.getInstance();
+    private final MapDataManager mapData = MapDataManager.getInstance();
+    private String savedFilters;
+
+    @BeforeEach
+    void setUp() throws DataImportException {
+        DatabaseManager.getInstance().resetDb();
+        URL url = Thread.currentThread().getContextClassLoader()
+                .getResource("files/random_5_crashes.csv");
+        new CrashManager().addAllCrashesFromFile(new CrashCsvImporter(), new File(url.getPath()));
+        savedFilters = filters.toString();
+    }
+
+    @AfterEach
+    void tearDown() {
+        filters.updateFiltersWithQueryString(savedFilters);
+        DatabaseManager.getInstance().resetDb();
+        mapData.invalidate();
+    }
+
+    private long countMatchingFilters() {
+        try (Stream<CrashPoint> crashes = new CrashManager()
+                .streamCrashLocations(filters.getFilterCondition())) {
+            return crashes.count();
+        }
+    }
+
+    /**
+     * Tests the crashes held stay the same as those matching the filters when only the
+     * crashes that start or stop matching are read.
+     */
+    @Test
+    void testFilterChangesReadOnlyDifference() {
+        mapData.loadFilteredCrashesAsync().join();
+        long allCount = countMatchingFilters();
+        Assertions.assertEquals(allCount, mapData.getCrashCount());
+
+        filters.removeFromSeverities(CrashSeverity.NONINJURY.getValue());
+        mapData.loadFilteredCrashesAsync().join();
+        Assertions.assertEquals(countMatchingFilters(), mapData.getCrashCount());
+
+        filters.addToSeverities(CrashSeverity.NONINJURY.getValue());
+        mapData.loadFilteredCrashesAsync().join();
+        Assertions.assertEquals(allCount, mapData.getCrashCount());
+    }
+
+    /**
+     * Tests tiles already sent are not sent again, and every tile is replaced when the
+     * zoom or the crashes shown change.
+     */
+    @Test
+    void testMarkerUpdateSendsOnlyNewTiles() {
+        List<CrashPoint> crashes = List.of(
+                new CrashPoint(1, -43.53, 172.63, 1, 2020, Weather.FINE),
+                new CrashPoint(2, -36.85, 174.76, 4, 2022, Weather.FINE));
+        mapData.showCrashes(crashes);
+        mapData.setZoom(8);
+        MarkerUpdate first = mapData.getMarkerUpdate();
+        Assertions.assertTrue(first.tilesReset());
+        Assertions.assertEquals(2, first.addedTiles().size());
+
+        MarkerUpdate unchanged = mapData.getMarkerUpdate();
+        Assertions.assertFalse(unchanged.tilesReset());
+        Assertions.assertFalse(unchanged.crashesChanged());
+        Assertions.assertTrue(unchanged.addedTiles().isEmpty());
+        Assertions.assertTrue(unchanged.removedTiles().isEmpty());
+
+        mapData.setZoom(9);
+        Assertions.assertTrue(mapData.getMarkerUpdate().tilesReset());
+
+        mapData.showCrashes(crashes.subList(0, 1));
+        MarkerUpdate fewer = mapData.getMarkerUpdate();
+        Assertions.assertTrue(fewer.tilesReset());
+        Assertions.assertEquals(1, fewer.addedTiles().size());
+    }
+}
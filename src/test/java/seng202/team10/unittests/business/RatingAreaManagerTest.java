@@ -173,6 +173,18 @@ public class RatingAreaManagerTest {
         Assertions.assertTrue(rateAreaResult.contains("SQRT"));
     }
 
+    /**
+     * Testing rateAreaCondition method with only one corner of the rectangle set.
+     */
+    @Test
+    void testRateAreaConditionWithHalfRectangle() {
+        manager.setBoundingBoxMin(10.0, 20.0);
+        manager.setBoundingBoxMax(null, null);
+        manager.setBoundingCircleCentre(null, null);
+
+        Assertions.assertNull(manager.rateAreaCondition());
+    }
+
     /**
      * Testing queryHelper method.
      */
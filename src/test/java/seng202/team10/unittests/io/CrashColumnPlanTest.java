@@ -0,0 +1,96 @@
+package seng202.team10.unittests.io;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import seng202.team10.exceptions.DataImportException;
+import seng202.team10.io.CrashColumnPlan;
+import seng202.team10.models.Crash;
+
+/**
+ * Testing CrashColumnPlan class.
+ *
+ * @author Team 10
+ */
+public class CrashColumnPlanTest {
+
+    private static final List<String> HEADER = List.of("OBJECTID", "bicycle", "bus",
+            "carStationWagon", "crashLocation1", "crashLocation2", "crashSeverity", "crashYear",
+            "holiday", "moped", "motorcycle", "parkedVehicle", "pedestrian", "region",
+            "schoolBus", "speedLimit", "train", "truck", "weatherA", "lat", "lng");
+
+    private static final List<String> ROW = List.of("42", "1", "", "2", "MAIN ROAD",
+            "HIGH STREET", "Serious Crash", "2019", "Christmas/New Year", "", "0", "", "1",
+            "Canterbury Region", "", "50", "", "1", "Fine", "-43.53", "172.63");
+
+    /**
+     * Tests every field is read from the column named in the header.
+     */
+    @Test
+    void testToCrash() throws DataImportException {
+        CrashColumnPlan plan = CrashColumnPlan.fromHeader(HEADER.toArray(new String[0]));
+        Crash crash = plan.toCrash(ROW.toArray(new String[0]));
+
+        Assertions.assertEquals(42, crash.getObjectId());
+        Assertions.assertEquals(2019, crash.getCrashYear());
+        Assertions.assertEquals(50, crash.getSpeedLimit());
+        Assertions.assertEquals("MAIN ROAD", crash.getCrashLocation1());
+        Assertions.assertTrue(crash.isBicycleInvolved());
+        Assertions.assertFalse(crash.isBusInvolved());
+        Assertions.assertTrue(crash.isCarInvolved());
+        Assertions.assertTrue(crash.isHoliday());
+        Assertions.assertTrue(crash.isPedestrianInvolved());
+        Assertions.assertTrue(crash.isTruckInvolved());
+        Assertions.assertEquals(-43.53, crash.getLatitude(), 1e-4);
+        Assertions.assertEquals(172.63, crash.getLongitude(), 1e-4);
+    }
+
+    /**
+     * Tests a file with its columns in a different order and extra columns is read the same.
+     */
+    @Test
+    void testReorderedColumns() throws DataImportException {
+        List<String> header = new ArrayList<>(HEADER);
+        List<String> row = new ArrayList<>(ROW);
+        header.add(0, "extra");
+        row.add(0, "ignored");
+        Collections.reverse(header);
+        Collections.reverse(row);
+
+        CrashColumnPlan plan = CrashColumnPlan.fromHeader(header.toArray(new String[0]));
+        Crash crash = plan.toCrash(row.toArray(new String[0]));
+
+        Assertions.assertEquals(2019, crash.getCrashYear());
+        Assertions.assertEquals(-43.53, crash.getLatitude(), 1e-4);
+        Assertions.assertEquals(172.63, crash.getLongitude(), 1e-4);
+        Assertions.assertEquals(Integer.valueOf(header.indexOf("crashYear")),
+                plan.getColumnIndexes().get("crashYear"));
+    }
+
+    /**
+     * Tests missing columns are named in the error.
+     */
+    @Test
+    void testMissingColumns() {
+        List<String> header = new ArrayList<>(HEADER);
+        header.remove("lat");
+        header.remove("crashYear");
+
+        DataImportException exception = Assertions.assertThrows(DataImportException.class,
+                () -> CrashColumnPlan.fromHeader(header.toArray(new String[0])));
+        Assertions.assertTrue(exception.getMessage().contains("crashYear"));
+        Assertions.assertTrue(exception.getMessage().contains("lat"));
+    }
+
+    /**
+     * Tests a row shorter than the header is rejected rather than read out of bounds.
+     */
+    @Test
+    void testShortRow() throws DataImportException {
+        CrashColumnPlan plan = CrashColumnPlan.fromHeader(HEADER.toArray(new String[0]));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> plan.toCrash(new String[] {"1", "0"}));
+    }
+}
@@ -3,15 +3,27 @@ package seng202.team10.unittests.io;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import seng202.team10.exceptions.DataImportException;
 import seng202.team10.io.CrashCsvImporter;
+import seng202.team10.io.RejectedRowLog;
 import seng202.team10.models.Crash;
 
 
@@ -48,6 +60,145 @@ public class CrashCsvImporterTest {
 
     }
 
+    @Test
+    void testReadCrashesInChunks() throws DataImportException {
+        URL url = Thread.currentThread().getContextClassLoader()
+                .getResource("files/random_5_crashes.csv");
+        File file = new File(url.getPath());
+        List<Integer> chunkSizes = new ArrayList<>();
+
+        int total = testImporter.readCrashesInChunks(file, 2,
+                chunk -> chunkSizes.add(chunk.size()));
+        assertEquals(5, total);
+        assertEquals(List.of(2, 2, 1), chunkSizes);
+    }
+
+    @Test
+    void testReadCrashesInParallelKeepsOrder() throws DataImportException {
+        URL url = Thread.currentThread().getContextClassLoader()
+                .getResource("files/random_5_crashes.csv");
+        File file = new File(url.getPath());
+        List<Crash> expected = testImporter.crashListFromFile(file);
+        List<Crash> crashes = new ArrayList<>();
+
+        int total = testImporter.readCrashesInParallel(file, 2, 3, crashes::addAll);
+        assertEquals(5, total);
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getCrashYear(), crashes.get(i).getCrashYear());
+            assertEquals(expected.get(i).getLatitude(), crashes.get(i).getLatitude());
+        }
+    }
+
+    @Test
+    void testReadGzipFile() throws DataImportException, IOException {
+        File csv = randomFiveCrashes();
+        File gzip = File.createTempFile("crashes", ".csv.gz");
+        try (OutputStream out = new GZIPOutputStream(new FileOutputStream(gzip))) {
+            Files.copy(csv.toPath(), out);
+        }
+
+        try {
+            List<Crash> crashes = new ArrayList<>();
+            assertEquals(5, testImporter.readCrashesInParallel(gzip, 2, 2, crashes::addAll));
+            assertEquals(testImporter.crashListFromFile(csv).get(4).getObjectId(),
+                    crashes.get(4).getObjectId());
+        } finally {
+            gzip.delete();
+        }
+    }
+
+    @Test
+    void testReadEveryCsvInZip() throws DataImportException, IOException {
+        File csv = randomFiveCrashes();
+        File zip = File.createTempFile("crashes", ".zip");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+            for (String name : List.of("2019.csv", "notes.txt", "2020.csv")) {
+                out.putNextEntry(new ZipEntry(name));
+                Files.copy(csv.toPath(), out);
+                out.closeEntry();
+            }
+        }
+
+        try {
+            assertEquals(10, testImporter.readCrashesInChunks(zip, 3, chunk -> { }));
+            assertEquals(10, testImporter.readCrashesInParallel(zip, 3, 2, chunk -> { }));
+        } finally {
+            zip.delete();
+        }
+    }
+
+    @Test
+    void testExpandSources() throws DataImportException, IOException {
+        File directory = Files.createTempDirectory("crashes").toFile();
+        File second = new File(directory, "b.csv.gz");
+        File first = new File(directory, "a.csv");
+        File ignored = new File(directory, "readme.txt");
+        for (File file : List.of(second, first, ignored)) {
+            Files.createFile(file.toPath());
+        }
+
+        try {
+            assertEquals(List.of(first, second),
+                    CrashCsvImporter.expandSources(List.of(directory)));
+            Assertions.assertThrows(DataImportException.class,
+                    () -> CrashCsvImporter.expandSources(List.of(ignored)));
+        } finally {
+            for (File file : List.of(second, first, ignored, directory)) {
+                file.delete();
+            }
+        }
+    }
+
+    @Test
+    void testRejectedRowsQuarantined() throws DataImportException, IOException {
+        List<String> lines = Files.readAllLines(randomFiveCrashes().toPath(),
+                StandardCharsets.UTF_8);
+        String[] row = lines.get(1).split(",", -1);
+        int year = Arrays.asList(lines.get(0).split(",")).indexOf("crashYear");
+        int severity = Arrays.asList(lines.get(0).split(",")).indexOf("crashSeverity");
+
+        String[] badYear = row.clone();
+        badYear[year] = "20O1";
+        String[] badSeverity = row.clone();
+        badSeverity[severity] = "Bad Crash";
+        String[] noId = row.clone();
+        noId[0] = "";
+        File dirty = File.createTempFile("dirty", ".csv");
+        Files.write(dirty.toPath(), List.of(lines.get(0), lines.get(1), String.join(",", badYear),
+                "81,0,1", String.join(",", noId), "", String.join(",", badSeverity)),
+                StandardCharsets.UTF_8);
+        File quarantine = File.createTempFile("rejected", ".csv");
+
+        try (RejectedRowLog rejectedRows = new RejectedRowLog(quarantine)) {
+            CrashCsvImporter importer = new CrashCsvImporter(rejectedRows);
+            assertEquals(1, importer.readCrashesInParallel(dirty, 2, 2, chunk -> { }));
+            assertEquals(4, importer.getRejectedCount());
+            assertEquals(1, rejectedRows.getCount(RejectedRowLog.Reason.INVALID_NUMBER));
+            assertEquals(1, rejectedRows.getCount(RejectedRowLog.Reason.MISSING_COLUMNS));
+            assertEquals(1, rejectedRows.getCount(RejectedRowLog.Reason.MISSING_OBJECT_ID));
+            assertEquals(1, rejectedRows.getCount(RejectedRowLog.Reason.INVALID_SEVERITY));
+            Assertions.assertTrue(rejectedRows.summary().startsWith("4 rows rejected"));
+        } finally {
+            dirty.delete();
+        }
+
+        try {
+            // Header plus one line per rejected row, blank lines are not rejections
+            List<String> quarantined = Files.readAllLines(quarantine.toPath());
+            assertEquals(5, quarantined.size());
+            Assertions.assertTrue(quarantined.stream()
+                    .anyMatch(line -> line.contains("\"3\",\"MISSING_COLUMNS\"")));
+        } finally {
+            quarantine.delete();
+        }
+    }
+
+    private static File randomFiveCrashes() {
+        URL url = Thread.currentThread().getContextClassLoader()
+                .getResource("files/random_5_crashes.csv");
+        return new File(url.getPath());
+    }
+
     @AfterAll
     static void tearDown() {
         testImporter = null;
@@ -0,0 +1,132 @@
+package seng202.team10.unittests.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import seng202.team10.exceptions.DataImportException;
+import seng202.team10.io.CrashCsvImporter;
+import seng202.team10.io.CrashSnapshot;
+import seng202.team10.models.Crash;
+
+/**
+ * Testing CrashSnapshot class.
+ *
+ * @author Team 10
+ */
+public class CrashSnapshotTest {
+
+    private List<Crash> crashes;
+    private File snapshotFile;
+
+    /**
+     * Reads the crashes to snapshot from a CSV file.
+     */
+    @BeforeEach
+    void setUp() throws DataImportException, IOException {
+        URL url = Thread.currentThread().getContextClassLoader()
+                .getResource("files/random_5_crashes.csv");
+        crashes = new CrashCsvImporter().crashListFromFile(new File(url.getPath()));
+        snapshotFile = File.createTempFile("crashes", ".snapshot");
+    }
+
+    /**
+     * Tests every field of every crash survives writing and mapping a snapshot.
+     */
+    @Test
+    void testRoundTrip() throws IOException {
+        CrashSnapshot.Writer writer = new CrashSnapshot.Writer();
+        writer.addAll(crashes);
+        writer.write(snapshotFile, 1234, 0xFEEDFACEL, CrashCsvImporter.PARSER_VERSION);
+
+        CrashSnapshot snapshot = CrashSnapshot.map(snapshotFile);
+        Assertions.assertEquals(crashes.size(), snapshot.size());
+        Assertions.assertEquals(1234, snapshot.getSourceLength());
+        Assertions.assertEquals(0xFEEDFACEL, snapshot.getSourceChecksum());
+        Assertions.assertEquals(CrashCsvImporter.PARSER_VERSION, snapshot.getParserVersion());
+
+        List<Crash> read = new ArrayList<>();
+        snapshot.readCrashesInChunks(2, read::addAll);
+        Assertions.assertEquals(crashes.size(), read.size());
+        for (int i = 0; i < crashes.size(); i++) {
+            Crash expected = crashes.get(i);
+            Crash actual = read.get(i);
+            Assertions.assertEquals(expected.getObjectId(), actual.getObjectId());
+            Assertions.assertEquals(expected.getSpeedLimit(), actual.getSpeedLimit());
+            Assertions.assertEquals(expected.getCrashYear(), actual.getCrashYear());
+            Assertions.assertEquals(expected.getCrashLocation1(), actual.getCrashLocation1());
+            Assertions.assertEquals(expected.getCrashLocation2(), actual.getCrashLocation2());
+            Assertions.assertEquals(expected.getSeverity(), actual.getSeverity());
+            Assertions.assertEquals(expected.getRegion(), actual.getRegion());
+            Assertions.assertEquals(expected.getWeather(), actual.getWeather());
+            Assertions.assertEquals(expected.getLatitude(), actual.getLatitude());
+            Assertions.assertEquals(expected.getLongitude(), actual.getLongitude());
+            Assertions.assertEquals(expected.isCarInvolved(), actual.isCarInvolved());
+            Assertions.assertEquals(expected.isPedestrianInvolved(),
+                    actual.isPedestrianInvolved());
+            Assertions.assertEquals(expected.isHoliday(), actual.isHoliday());
+        }
+    }
+
+    /**
+     * Tests a snapshot can be read from a stream as well as mapped.
+     */
+    @Test
+    void testReadFromStream() throws IOException {
+        CrashSnapshot.Writer writer = new CrashSnapshot.Writer();
+        writer.addAll(crashes);
+        writer.write(snapshotFile, 0, 0, CrashCsvImporter.PARSER_VERSION);
+
+        CrashSnapshot snapshot = CrashSnapshot.read(
+                new ByteArrayInputStream(Files.readAllBytes(snapshotFile.toPath())));
+        Assertions.assertEquals(crashes.get(0).getLatitude(), snapshot.getLatitude(0), 0);
+    }
+
+    /**
+     * Tests a snapshot only matches a CSV of the same size and checksum read by the
+     * current parser.
+     */
+    @Test
+    void testIsSnapshotOf() throws IOException {
+        CrashSnapshot.Writer writer = new CrashSnapshot.Writer();
+        writer.addAll(crashes);
+        writer.write(snapshotFile, 1234, 42, CrashCsvImporter.PARSER_VERSION);
+        CrashSnapshot snapshot = CrashSnapshot.map(snapshotFile);
+        Assertions.assertTrue(snapshot.isSnapshotOf(1234, 42));
+        Assertions.assertFalse(snapshot.isSnapshotOf(1234, 43));
+        Assertions.assertFalse(snapshot.isSnapshotOf(1235, 42));
+
+        writer.write(snapshotFile, 1234, 42, CrashCsvImporter.PARSER_VERSION - 1);
+        Assertions.assertFalse(CrashSnapshot.map(snapshotFile).isSnapshotOf(1234, 42));
+    }
+
+    /**
+     * Tests a truncated snapshot is rejected rather than read past its end.
+     */
+    @Test
+    void testTruncatedSnapshot() throws IOException {
+        CrashSnapshot.Writer writer = new CrashSnapshot.Writer();
+        writer.addAll(crashes);
+        writer.write(snapshotFile, 0, 0, CrashCsvImporter.PARSER_VERSION);
+
+        byte[] bytes = Files.readAllBytes(snapshotFile.toPath());
+        Files.write(snapshotFile.toPath(), Arrays.copyOf(bytes, bytes.length - 4));
+        Assertions.assertThrows(IOException.class, () -> CrashSnapshot.map(snapshotFile));
+    }
+
+    /**
+     * Deletes the snapshot file after each test.
+     */
+    @AfterEach
+    void tearDown() {
+        snapshotFile.delete();
+    }
+}
@@ -3,9 +3,9 @@ package seng202.team10.unittests.models;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import org.junit.jupiter.api.Test;
+import seng202.team10.models.CrashPoint;
 import seng202.team10.models.Review;
 
 
@@ -21,7 +21,7 @@ public class ReviewTest {
      */
     @Test
     public void testToStringWithCrashes() {
-        List<HashMap<String, Object>> crashes = new ArrayList<>();
+        List<CrashPoint> crashes = new ArrayList<>();
         Review review = new Review(7.5, 8.0, "Snowy", 1999, 2023, 10, "Elm St", crashes);
 
         String expected = "This route has a 7.50/10 danger rating, "
@@ -37,7 +37,7 @@ public class ReviewTest {
      */
     @Test
     public void testToStringWithoutCrashes() {
-        List<HashMap<String, Object>> crashes = new ArrayList<>();
+        List<CrashPoint> crashes = new ArrayList<>();
         Review review = new Review(0.0, 0.0, "Clear", 1999, 2023, -1, "Pine St", crashes);
 
         String expected = "This route has zero crashes and hence is as safe as can be!";
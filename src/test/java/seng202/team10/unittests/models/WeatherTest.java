@@ -36,6 +36,18 @@ public class WeatherTest {
         Assertions.assertEquals(expectedWeather, actualWeather);
     }
 
+    /**
+     * Testing nameToWeather maps each stored name back to its weather.
+     */
+    @Test
+    void testNameToWeather() {
+        for (Weather weather : Weather.values()) {
+            Assertions.assertEquals(weather, Weather.nameToWeather(weather.getName()));
+        }
+        Assertions.assertEquals(Weather.NULL, Weather.nameToWeather("Light rain"));
+        Assertions.assertEquals(Weather.NULL, Weather.nameToWeather(null));
+    }
+
     /**
      * Testing getName method.
      */
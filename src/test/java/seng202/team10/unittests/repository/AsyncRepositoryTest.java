@@ -0,0 +1,103 @@
+package seng202.team10.unittests.repository;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import seng202.team10.repository.AsyncRepository;
+import seng202.team10.repository.DatabaseManager;
+import seng202.team10.repository.SqliteQueryBuilder;
+
+/**
+ * Testing AsyncRepository class.
+ *
+ * @author Team 10
+ */
+public class AsyncRepositoryTest {
+
+    private AsyncRepository asyncRepository;
+
+    /**
+     * Creates a repository with a single worker thread so tests control the order work runs.
+     */
+    @BeforeEach
+    void setUp() {
+        DatabaseManager.getInstance().resetDb();
+        asyncRepository = new AsyncRepository(1);
+    }
+
+    /**
+     * Tests a query runs on a database thread rather than the calling thread.
+     */
+    @Test
+    void testQueryRunsOffCallingThread() throws Exception {
+        List<String> threads = asyncRepository.query(SqliteQueryBuilder.create()
+                        .select("1")
+                        .from("crashes"),
+                rs -> Thread.currentThread().getName())
+                .get(5, TimeUnit.SECONDS);
+        Assertions.assertTrue(threads.isEmpty());
+
+        String thread = asyncRepository.submit(() -> Thread.currentThread().getName())
+                .get(5, TimeUnit.SECONDS);
+        Assertions.assertTrue(thread.startsWith("db-query-"), thread);
+    }
+
+    /**
+     * Tests newer work with the same key cancels older work that has not finished.
+     */
+    @Test
+    void testSubmitLatestCancelsSuperseded() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> blocker = asyncRepository.submit(() -> {
+            awaitQuietly(release);
+            return null;
+        });
+        CompletableFuture<String> first = asyncRepository.submitLatest("test", () -> "first");
+        CompletableFuture<String> second = asyncRepository.submitLatest("test", () -> "second");
+        release.countDown();
+
+        Assertions.assertEquals("second", second.get(5, TimeUnit.SECONDS));
+        Assertions.assertTrue(first.isCancelled());
+        blocker.get(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Tests cancelling a running query stops its statement and frees the worker.
+     */
+    @Test
+    void testCancelStopsRunningStatement() throws Exception {
+        CompletableFuture<List<Long>> slow = asyncRepository.query(SqliteQueryBuilder.create()
+                        .select("COUNT(*)")
+                        .from("(WITH RECURSIVE n(x) AS (SELECT 1 UNION ALL "
+                                + "SELECT x + 1 FROM n WHERE x < 1000000000) SELECT x FROM n)"),
+                rs -> rs.getLong(1));
+        Thread.sleep(200);
+        slow.cancel(false);
+
+        // The single worker only picks this up once the cancelled statement has stopped
+        String next = asyncRepository.submit(() -> "next").get(10, TimeUnit.SECONDS);
+        Assertions.assertEquals("next", next);
+        Assertions.assertTrue(slow.isCancelled());
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stops the worker thread after each test.
+     */
+    @AfterEach
+    void tearDown() {
+        asyncRepository.shutdown();
+    }
+}
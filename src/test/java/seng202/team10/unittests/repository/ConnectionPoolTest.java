@@ -0,0 +1,140 @@
+package seng202.team10.unittests.repository;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import seng202.team10.repository.ConnectionPool;
+
+/**
+ * Testing ConnectionPool class.
+ *
+ * @author Team 10
+ */
+public class ConnectionPoolTest {
+
+    private File databaseFile;
+    private ConnectionPool pool;
+
+    /**
+     * Creates a pool over a fresh temporary database.
+     */
+    @BeforeEach
+    void setUp() throws IOException {
+        databaseFile = File.createTempFile("poolTest", ".db");
+        pool = new ConnectionPool("jdbc:sqlite:" + databaseFile.getPath(), 2,
+                List.of("PRAGMA query_only = ON"), List.of("PRAGMA busy_timeout = 1000"));
+    }
+
+    /**
+     * Closes the pool and removes the temporary database.
+     */
+    @AfterEach
+    void tearDown() {
+        pool.close();
+        databaseFile.delete();
+    }
+
+    /**
+     * Tests a closed read connection is returned to the pool and reused.
+     */
+    @Test
+    void testReaderIsReused() throws SQLException {
+        Connection first = pool.acquireReader();
+        Connection underlying = first.unwrap(Connection.class);
+        Assertions.assertEquals(1, pool.getActiveCount());
+        first.close();
+
+        Assertions.assertEquals(0, pool.getActiveCount());
+        Assertions.assertEquals(1, pool.getIdleCount());
+        Assertions.assertTrue(first.isClosed());
+
+        try (Connection second = pool.acquireReader()) {
+            Assertions.assertSame(underlying, second.unwrap(Connection.class));
+        }
+        Assertions.assertEquals(2, pool.getAcquireCount());
+    }
+
+    /**
+     * Tests a writer that fails to open does not leave the writer slot taken, so the
+     * next caller tries to open it again instead of waiting for one that never comes.
+     */
+    @Test
+    void testFailedWriterCanBeRetried() {
+        pool.close();
+        pool = new ConnectionPool("jdbc:sqlite:" + databaseFile.getPath(), 2,
+                List.of(), List.of("NOT A PRAGMA"));
+        Assertions.assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            Assertions.assertThrows(SQLException.class, pool::acquireWriter);
+            SQLException retry = Assertions.assertThrows(SQLException.class,
+                    pool::acquireWriter);
+            Assertions.assertFalse(retry.getMessage().contains("Timed out"));
+        });
+    }
+
+    /**
+     * Tests reader PRAGMAs are applied, making read connections read only.
+     */
+    @Test
+    void testReaderPragmasApplied() throws SQLException {
+        try (Connection reader = pool.acquireReader();
+             Statement statement = reader.createStatement()) {
+            Assertions.assertThrows(SQLException.class,
+                    () -> statement.execute("CREATE TABLE test (id INTEGER)"));
+        }
+        try (Connection writer = pool.acquireWriter();
+             Statement statement = writer.createStatement()) {
+            statement.execute("CREATE TABLE test (id INTEGER)");
+        }
+    }
+
+    /**
+     * Tests only one caller can hold the writer connection at a time.
+     */
+    @Test
+    void testWriterIsExclusive() throws Exception {
+        CountDownLatch acquired = new CountDownLatch(1);
+        Connection writer = pool.acquireWriter();
+
+        Thread other = new Thread(() -> {
+            try (Connection connection = pool.acquireWriter()) {
+                acquired.countDown();
+            } catch (SQLException sqlException) {
+                Assertions.fail(sqlException);
+            }
+        });
+        other.start();
+
+        Assertions.assertFalse(acquired.await(200, TimeUnit.MILLISECONDS));
+        writer.close();
+        Assertions.assertTrue(acquired.await(5, TimeUnit.SECONDS));
+        other.join();
+    }
+
+    /**
+     * Tests statements of the same SQL are reused on a connection and counted as hits.
+     */
+    @Test
+    void testStatementCacheHits() throws SQLException {
+        String sql = "SELECT ? + 1";
+        for (int i = 0; i < 3; i++) {
+            try (Connection reader = pool.acquireReader();
+                 PreparedStatement statement = reader.prepareStatement(sql)) {
+                statement.setInt(1, i);
+                statement.executeQuery().close();
+            }
+        }
+        Assertions.assertEquals(1, pool.getStatementCacheMisses());
+        Assertions.assertEquals(2, pool.getStatementCacheHits());
+    }
+}
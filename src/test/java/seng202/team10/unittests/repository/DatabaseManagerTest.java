@@ -1,8 +1,15 @@
 package seng202.team10.unittests.repository;
 
 import java.io.File;
+import java.io.IOException;
 import java.net.URL;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.junit.jupiter.api.Assertions;
@@ -10,6 +17,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import seng202.team10.exceptions.DataImportException;
 import seng202.team10.io.CrashCsvImporter;
+import seng202.team10.io.CrashSnapshot;
 import seng202.team10.models.Crash;
 import seng202.team10.repository.DatabaseManager;
 import seng202.team10.repository.SqliteQueryBuilder;
@@ -49,6 +57,31 @@ public class DatabaseManagerTest {
         Assertions.assertEquals(5, crashesFromDatabase.size());
     }
 
+    /**
+     * Tests a saved snapshot of a CSV with the same size but different contents is not
+     * used, and is rebuilt from the CSV.
+     */
+    @Test
+    void testInitialiseDatabaseRebuildsStaleSnapshot()
+            throws DataImportException, IOException {
+        String fileName = "files/random_5_crashes.csv";
+        File csv = new File(Thread.currentThread().getContextClassLoader()
+                .getResource(fileName).getPath());
+        CrashSnapshot.Writer writer = new CrashSnapshot.Writer();
+        writer.add(new CrashCsvImporter().crashListFromFile(csv).get(0));
+        File snapshotFile = manager.getSnapshotFile(fileName);
+        writer.write(snapshotFile, csv.length(), 0, CrashCsvImporter.PARSER_VERSION);
+
+        try {
+            manager.initialiseDatabase(fileName);
+            Assertions.assertEquals(5, SqliteQueryBuilder.create()
+                    .select("*").from("crashes").buildGetter().size());
+            Assertions.assertEquals(5, CrashSnapshot.map(snapshotFile).size());
+        } finally {
+            snapshotFile.delete();
+        }
+    }
+
     /**
      * Tests the database gets created.
      */
@@ -105,4 +138,59 @@ public class DatabaseManagerTest {
         }
     }
 
+    /**
+     * Tests the database is opened in WAL mode.
+     */
+    @Test
+    void testJournalModeIsWal() throws SQLException {
+        try (Connection conn = manager.connect();
+             Statement statement = conn.createStatement();
+             ResultSet rs = statement.executeQuery("PRAGMA journal_mode")) {
+            Assertions.assertEquals("wal", rs.getString(1).toLowerCase());
+        }
+    }
+
+    /**
+     * Tests readers keep working while the 10k crash file is imported. The import commits
+     * in chunks, so readers see the count of committed crashes only ever grow.
+     */
+    @Test
+    void testConcurrentReadsDuringImport() throws Exception {
+        URL newUrl = Thread.currentThread().getContextClassLoader()
+                .getResource("files/crash_data_10k.csv");
+        File testFile = new File(newUrl.getPath());
+
+        AtomicReference<Exception> importError = new AtomicReference<>();
+        Thread importThread = new Thread(() -> {
+            try {
+                manager.importFile(testFile);
+            } catch (DataImportException dataImportException) {
+                importError.set(dataImportException);
+            }
+        });
+
+        List<Integer> counts = new ArrayList<>();
+        importThread.start();
+        while (importThread.isAlive()) {
+            // Fails the test with an SQLException if a read is blocked by the import
+            try (Connection conn = manager.connect();
+                 Statement statement = conn.createStatement();
+                 ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM crashes")) {
+                counts.add(rs.getInt(1));
+            }
+        }
+        importThread.join();
+        Assertions.assertNull(importError.get());
+
+        int total = SqliteQueryBuilder.create().select("object_id").from("crashes")
+                .buildGetter().size();
+        Assertions.assertTrue(total > 0);
+        Assertions.assertFalse(counts.isEmpty());
+        int previous = 0;
+        for (int count : counts) {
+            Assertions.assertTrue(count >= previous && count <= total,
+                    "Read an uncommitted chunk");
+            previous = count;
+        }
+    }
 }
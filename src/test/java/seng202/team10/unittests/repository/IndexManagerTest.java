@@ -0,0 +1,243 @@
+package seng202.team10.unittests.repository;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import seng202.team10.business.FilterManager;
+import seng202.team10.repository.DatabaseManager;
+import seng202.team10.repository.IndexManager;
+import seng202.team10.repository.QueryCondition;
+import seng202.team10.repository.SqliteQueryBuilder;
+
+/**
+ * Testing IndexManager class.
+ *
+ * @author Team 10
+ */
+public class IndexManagerTest {
+
+    private IndexManager indexManager;
+
+    /**
+     * Resets the database, which creates all indexes.
+     */
+    @BeforeEach
+    void setUp() {
+        DatabaseManager.getInstance().resetDb();
+        indexManager = DatabaseManager.getInstance().getIndexManager();
+    }
+
+    /**
+     * Tests no indexes are missing after a reset.
+     */
+    @Test
+    void testNoIndexesMissingAfterReset() {
+        Assertions.assertFalse(indexManager.getExpectedIndexes().isEmpty());
+        Assertions.assertTrue(indexManager.findMissingIndexes().isEmpty());
+    }
+
+    /**
+     * Tests a dropped index is found missing and recreated.
+     */
+    @Test
+    void testEnsureIndexesRecreatesMissing() throws SQLException {
+        try (Connection conn = DatabaseManager.getInstance().connectForWriting();
+             Statement statement = conn.createStatement()) {
+            statement.execute("DROP INDEX idx_crashes_year_severity");
+        }
+        Assertions.assertEquals(List.of("idx_crashes_year_severity"),
+                indexManager.findMissingIndexes());
+
+        indexManager.ensureIndexes();
+        Assertions.assertTrue(indexManager.findMissingIndexes().isEmpty());
+    }
+
+    /**
+     * Tests a year range query searches the year index instead of scanning the table.
+     */
+    @Test
+    void testYearRangeUsesIndex() {
+        List<String> plan = indexManager.explainQueryPlan(SqliteQueryBuilder.create()
+                .select("object_id, severity")
+                .from("crashes")
+                .where("crash_year BETWEEN ? AND ?", 2010, 2012));
+        Assertions.assertTrue(plan.stream()
+                .anyMatch(line -> line.contains("idx_crashes_year_severity")), plan.toString());
+    }
+
+    /**
+     * Tests an unfiltered group by scans its covering index.
+     */
+    @Test
+    void testGroupByUsesCoveringIndex() {
+        List<String> plan = indexManager.explainQueryPlan(SqliteQueryBuilder.create()
+                .select("region, COUNT(*)")
+                .from("crashes")
+                .groupBy("region"));
+        Assertions.assertTrue(plan.stream()
+                .anyMatch(line -> line.contains("COVERING INDEX")), plan.toString());
+    }
+
+    /**
+     * Tests inserting, moving and deleting crashes keeps the spatial index in step.
+     */
+    @Test
+    void testSpatialIndexMaintainedByTriggers() throws SQLException {
+        try (Connection conn = DatabaseManager.getInstance().connectForWriting();
+             Statement statement = conn.createStatement()) {
+            statement.execute("INSERT INTO crashes (object_id, longitude, latitude) "
+                    + "VALUES (1, 172.6, -43.5), (2, 174.7, -36.8)");
+        }
+        Assertions.assertEquals(2, countInViewport(170, 176, -45, -35));
+        Assertions.assertTrue(indexManager.isSpatialIndexConsistent());
+
+        try (Connection conn = DatabaseManager.getInstance().connectForWriting();
+             Statement statement = conn.createStatement()) {
+            statement.execute("UPDATE crashes SET longitude = 178.0 WHERE object_id = 1");
+            statement.execute("DELETE FROM crashes WHERE object_id = 2");
+        }
+        Assertions.assertEquals(0, countInViewport(170, 176, -45, -35));
+        Assertions.assertEquals(1, countInViewport(177, 179, -45, -35));
+        Assertions.assertTrue(indexManager.isSpatialIndexConsistent());
+    }
+
+    /**
+     * Tests a spatial index that has drifted from the crashes table is rebuilt.
+     */
+    @Test
+    void testEnsureSpatialIndexRebuilds() throws SQLException {
+        try (Connection conn = DatabaseManager.getInstance().connectForWriting();
+             Statement statement = conn.createStatement()) {
+            statement.execute("INSERT INTO crashes (object_id, longitude, latitude) "
+                    + "VALUES (1, 172.6, -43.5)");
+            statement.execute("DELETE FROM rtree_index");
+        }
+        Assertions.assertFalse(indexManager.isSpatialIndexConsistent());
+
+        indexManager.ensureSpatialIndex();
+        Assertions.assertTrue(indexManager.isSpatialIndexConsistent());
+        Assertions.assertEquals(1, countInViewport(170, 176, -45, -35));
+    }
+
+    /**
+     * Tests the expected triggers are those the migrations create.
+     */
+    @Test
+    void testExpectedTriggers() {
+        Assertions.assertEquals(
+                Set.of("crashes_rtree_insert", "crashes_rtree_update", "crashes_rtree_delete"),
+                new HashSet<>(indexManager.getExpectedTriggers()));
+        Assertions.assertTrue(indexManager.findMissingTriggers().isEmpty());
+    }
+
+    /**
+     * Tests a trigger whose definition spans lines is created with its name and timing
+     * intact.
+     */
+    @Test
+    void testUpdateTriggerDefinition() throws SQLException {
+        Map<String, String> triggers = new HashMap<>();
+        try (Connection conn = DatabaseManager.getInstance().connect();
+             Statement statement = conn.createStatement();
+             ResultSet rs = statement.executeQuery(
+                     "SELECT name, sql FROM sqlite_master WHERE type = 'trigger'")) {
+            while (rs.next()) {
+                triggers.put(rs.getString(1), rs.getString(2));
+            }
+        }
+        Assertions.assertFalse(triggers.containsKey("crashes_rtree_updateAFTER"));
+        Assertions.assertTrue(triggers.containsKey("crashes_rtree_update"), triggers.toString());
+        Assertions.assertTrue(triggers.get("crashes_rtree_update").matches(
+                "(?s).*crashes_rtree_update\\s+AFTER UPDATE OF .*"),
+                triggers.get("crashes_rtree_update"));
+    }
+
+    /**
+     * Tests a dropped trigger is found missing and recreated.
+     */
+    @Test
+    void testEnsureTriggersRecreatesMissing() throws SQLException {
+        try (Connection conn = DatabaseManager.getInstance().connectForWriting();
+             Statement statement = conn.createStatement()) {
+            statement.execute("DROP TRIGGER crashes_rtree_insert");
+        }
+        Assertions.assertEquals(List.of("crashes_rtree_insert"),
+                indexManager.findMissingTriggers());
+
+        indexManager.ensureTriggers();
+        Assertions.assertTrue(indexManager.findMissingTriggers().isEmpty());
+    }
+
+    /**
+     * Tests a bulk load drops the crash triggers and indexes, then restores them and
+     * indexes the rows written in between.
+     */
+    @Test
+    void testBulkLoad() throws SQLException {
+        indexManager.beginBulkLoad();
+        Assertions.assertEquals(3, indexManager.findMissingTriggers().size());
+        List<String> missing = indexManager.findMissingIndexes();
+        Assertions.assertTrue(missing.contains("idx_crashes_year_severity"));
+        Assertions.assertFalse(missing.contains("idx_favourites_route_name"));
+
+        try (Connection conn = DatabaseManager.getInstance().connectForWriting();
+             Statement statement = conn.createStatement()) {
+            statement.execute("INSERT INTO crashes (object_id, longitude, latitude) "
+                    + "VALUES (1, 172.6, -43.5), (2, 174.7, -36.8)");
+        }
+        Assertions.assertFalse(indexManager.isSpatialIndexConsistent());
+
+        indexManager.endBulkLoad();
+        Assertions.assertTrue(indexManager.findMissingTriggers().isEmpty());
+        Assertions.assertTrue(indexManager.findMissingIndexes().isEmpty());
+        Assertions.assertTrue(indexManager.isSpatialIndexConsistent());
+        Assertions.assertEquals(2, countInViewport(170, 176, -45, -35));
+    }
+
+    /**
+     * Tests a filtered viewport query looks crashes up through the spatial index.
+     */
+    @Test
+    void testViewportUsesSpatialIndex() {
+        List<String> plan = indexManager.explainQueryPlan(SqliteQueryBuilder.create()
+                .select("object_id")
+                .from("crashes")
+                .where(FilterManager.getInstance().getFilterCondition().and(viewport(
+                        170, 176, -45, -35))));
+        Assertions.assertTrue(plan.stream()
+                .anyMatch(line -> line.contains("rtree_index")), plan.toString());
+    }
+
+    private QueryCondition viewport(double minX, double maxX, double minY, double maxY) {
+        return QueryCondition.of("object_id IN (SELECT id FROM rtree_index "
+                + "WHERE minX >= ? AND maxX <= ? AND minY >= ? AND maxY <= ?)",
+                minX, maxX, minY, maxY);
+    }
+
+    private int countInViewport(double minX, double maxX, double minY, double maxY) {
+        return SqliteQueryBuilder.create()
+                .select("object_id")
+                .from("crashes")
+                .where(viewport(minX, maxX, minY, maxY))
+                .buildGetter()
+                .size();
+    }
+
+    /**
+     * Clear database after each test.
+     */
+    @AfterEach
+    void clearDatabase() {
+        DatabaseManager.getInstance().resetDb();
+    }
+}
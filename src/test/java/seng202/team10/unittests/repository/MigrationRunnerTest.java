@@ -0,0 +1,129 @@
+package seng202.team10.unittests.repository;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import seng202.team10.repository.DatabaseManager;
+import seng202.team10.repository.MigrationRunner;
+import seng202.team10.repository.SqliteQueryBuilder;
+
+/**
+ * Testing MigrationRunner class.
+ *
+ * @author Team 10
+ */
+public class MigrationRunnerTest {
+
+    private DatabaseManager manager;
+    private MigrationRunner migrationRunner;
+
+    /**
+     * Resets the database, which runs every migration.
+     */
+    @BeforeEach
+    void setUp() {
+        manager = DatabaseManager.getInstance();
+        manager.resetDb();
+        migrationRunner = manager.getMigrationRunner();
+    }
+
+    /**
+     * Tests a reset database is at the latest schema version.
+     */
+    @Test
+    void testResetMigratesToLatestVersion() {
+        Assertions.assertEquals(MigrationRunner.getMigrations().size(),
+                migrationRunner.getLatestVersion());
+        Assertions.assertEquals(migrationRunner.getLatestVersion(),
+                migrationRunner.getCurrentVersion());
+    }
+
+    /**
+     * Tests migrating an up to date database does nothing.
+     */
+    @Test
+    void testMigrateIsNoOpWhenUpToDate() {
+        Assertions.assertEquals(migrationRunner.getLatestVersion(), migrationRunner.migrate());
+        Assertions.assertTrue(manager.getIndexManager().findMissingIndexes().isEmpty());
+    }
+
+    /**
+     * Tests an older database is migrated in place without losing its rows.
+     */
+    @Test
+    void testMigrateKeepsExistingData() throws SQLException {
+        try (Connection conn = manager.connectForWriting();
+             Statement statement = conn.createStatement()) {
+            statement.execute("INSERT INTO favourites (route_name) VALUES ('Home')");
+            statement.execute("DROP INDEX idx_favourites_route_name");
+            statement.execute("PRAGMA user_version = 1");
+        }
+
+        Assertions.assertEquals(migrationRunner.getLatestVersion(), migrationRunner.migrate());
+        Assertions.assertTrue(manager.getIndexManager().findMissingIndexes().isEmpty());
+        List<?> favourites = SqliteQueryBuilder.create()
+                .select("route_name")
+                .from("favourites")
+                .buildGetter();
+        Assertions.assertEquals(1, favourites.size());
+    }
+
+    /**
+     * Tests a database made before migrations, with its tables but no version,
+     * is migrated without being dropped.
+     */
+    @Test
+    void testMigrateUnversionedDatabase() throws SQLException {
+        try (Connection conn = manager.connectForWriting();
+             Statement statement = conn.createStatement()) {
+            statement.execute("INSERT INTO favourites (route_name) VALUES ('Work')");
+            statement.execute("PRAGMA user_version = 0");
+        }
+
+        Assertions.assertEquals(migrationRunner.getLatestVersion(), migrationRunner.migrate());
+        List<?> favourites = SqliteQueryBuilder.create()
+                .select("route_name")
+                .from("favourites")
+                .buildGetter();
+        Assertions.assertEquals(1, favourites.size());
+    }
+
+    /**
+     * Tests a database at version 4 with the misnamed update trigger gets the update
+     * trigger recreated with its name and WHEN clause.
+     */
+    @Test
+    void testMigrateRecreatesUpdateTrigger() throws SQLException {
+        try (Connection conn = manager.connectForWriting();
+             Statement statement = conn.createStatement()) {
+            statement.execute("DROP TRIGGER crashes_rtree_update");
+            statement.execute("CREATE TRIGGER crashes_rtree_updateAFTER "
+                    + "AFTER UPDATE OF object_id, longitude, latitude ON crashes BEGIN "
+                    + "DELETE FROM rtree_index WHERE id = OLD.object_id; END");
+            statement.execute("PRAGMA user_version = 4");
+        }
+
+        Assertions.assertEquals(migrationRunner.getLatestVersion(), migrationRunner.migrate());
+        List<String> triggers = SqliteQueryBuilder.create()
+                .select("sql")
+                .from("sqlite_master")
+                .where("type = 'trigger' AND name LIKE ?", "crashes_rtree_update%")
+                .buildGetter(rs -> rs.getString(1));
+        Assertions.assertEquals(1, triggers.size());
+        Assertions.assertTrue(triggers.get(0).contains("WHEN OLD.object_id IS NOT NEW.object_id"),
+                triggers.get(0));
+    }
+
+    /**
+     * Clear database after each test.
+     */
+    @AfterEach
+    void clearDatabase() {
+        manager.resetDb();
+    }
+}
@@ -0,0 +1,83 @@
+package seng202.team10.unittests.repository;
+
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import seng202.team10.repository.DatabaseManager;
+import seng202.team10.repository.SchemaCache;
+
+/**
+ * Testing SchemaCache class.
+ *
+ * @author Team 10
+ */
+public class SchemaCacheTest {
+
+    private DatabaseManager manager;
+    private SchemaCache schemaCache;
+
+    /**
+     * Resets the database, which clears the cache.
+     */
+    @BeforeEach
+    void setUp() {
+        manager = DatabaseManager.getInstance();
+        manager.resetDb();
+        schemaCache = manager.getSchemaCache();
+    }
+
+    /**
+     * Tests the columns of a table are read in declaration order.
+     */
+    @Test
+    void testGetColumns() {
+        List<String> columns = schemaCache.getColumns("favourites");
+        Assertions.assertEquals(List.of("id", "start_address", "end_address", "start_lat",
+                "start_lng", "end_lat", "end_lng", "filters", "transport_mode", "route_name"),
+                columns);
+    }
+
+    /**
+     * Tests a table's columns are only read from the database once.
+     */
+    @Test
+    void testColumnsAreCached() {
+        long acquires = manager.getConnectionPool().getAcquireCount();
+        List<String> first = schemaCache.getColumns("crashes");
+        List<String> second = schemaCache.getColumns("crashes");
+
+        Assertions.assertSame(first, second);
+        Assertions.assertEquals(acquires + 1, manager.getConnectionPool().getAcquireCount());
+    }
+
+    /**
+     * Tests resetting the database clears the cache.
+     */
+    @Test
+    void testResetInvalidatesCache() {
+        List<String> before = schemaCache.getColumns("crashes");
+        manager.resetDb();
+        List<String> after = schemaCache.getColumns("crashes");
+
+        Assertions.assertNotSame(before, after);
+        Assertions.assertEquals(before, after);
+    }
+
+    /**
+     * Tests a table that does not exist has no columns and is not cached.
+     */
+    @Test
+    void testMissingTable() {
+        Assertions.assertTrue(schemaCache.getColumns("not_a_table").isEmpty());
+    }
+
+    /**
+     * Clear database after each test.
+     */
+    @AfterEach
+    void clearDatabase() {
+        manager.resetDb();
+    }
+}
@@ -3,11 +3,14 @@ package seng202.team10.unittests.repository;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Stream;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import seng202.team10.models.Crash;
 import seng202.team10.models.Favourite;
+import seng202.team10.repository.ConnectionPool;
 import seng202.team10.repository.DatabaseManager;
 import seng202.team10.repository.SqliteQueryBuilder;
 
@@ -105,6 +108,39 @@ public class SqliteQueryBuilderTest {
         Assertions.assertEquals(expectedQuery, builder.getQuery());
     }
 
+    /**
+     * Tests where function with parameters keeps values out of the query text.
+     */
+    @Test
+    void testWhereWithParameters() {
+        builder.where("route_name = ? AND crash_year > ?", "Home", 2010);
+        String expectedQuery = "WHERE route_name = ? AND crash_year > ? ";
+        Assertions.assertEquals(expectedQuery, builder.getQuery());
+        Assertions.assertEquals(Arrays.asList("Home", 2010), builder.getParameters());
+    }
+
+    /**
+     * Tests buildGetter binds where parameters.
+     */
+    @Test
+    void testBuildGetterWithParameters() {
+        // Reset to make sure nothing in database
+        DatabaseManager.getInstance().resetDb();
+
+        Favourite home = new Favourite("40 Little Oaks Drive",
+                "University of Canterbury", 143.657, 34.534,
+                141.657, 33.534, "", "bike", "Home");
+        Favourite work = new Favourite("University of Canterbury",
+                "40 Little Oaks Drive", 141.657, 33.534,
+                143.657, 34.534, "", "car", "Work \"Route\"");
+        builder.insert("favourites").buildSetter(Arrays.asList(home, work));
+
+        List<?> favourites = SqliteQueryBuilder.create().select("*").from("favourites")
+                .where("route_name = ?", "Work \"Route\"").buildGetter();
+        Assertions.assertEquals(1, favourites.size());
+        Assertions.assertEquals("car", ((Favourite) favourites.get(0)).getTransportMode());
+    }
+
     /**
      * Test buildSetter function.
      */
@@ -139,6 +175,109 @@ public class SqliteQueryBuilderTest {
         Assertions.assertEquals(0, crashes.size());
     }
 
+    /**
+     * Tests buildGetter with a row mapper maps each row to the mapper's type.
+     */
+    @Test
+    void testBuildGetterWithRowMapper() {
+        // Reset to make sure nothing in database
+        DatabaseManager.getInstance().resetDb();
+
+        Favourite favourite = new Favourite("40 Little Oaks Drive",
+                "University of Canterbury", 143.657, 34.534,
+                141.657, 33.534, "", "bike", "Home");
+        builder.insert("favourites").buildSetter(List.of(favourite));
+
+        List<String> names = SqliteQueryBuilder.create().select("route_name")
+                .from("favourites").buildGetter(rs -> rs.getString(1));
+        Assertions.assertEquals(List.of("Home"), names);
+    }
+
+    /**
+     * Tests buildStream reads rows lazily and returns its connection when closed.
+     */
+    @Test
+    void testBuildStream() {
+        // Reset to make sure nothing in database
+        DatabaseManager.getInstance().resetDb();
+
+        Favourite home = new Favourite("40 Little Oaks Drive",
+                "University of Canterbury", 143.657, 34.534,
+                141.657, 33.534, "", "bike", "Home");
+        Favourite work = new Favourite("University of Canterbury",
+                "40 Little Oaks Drive", 141.657, 33.534,
+                143.657, 34.534, "", "car", "Work");
+        builder.insert("favourites").buildSetter(Arrays.asList(home, work));
+
+        ConnectionPool pool = DatabaseManager.getInstance().getConnectionPool();
+        try (Stream<String> names = SqliteQueryBuilder.create().select("route_name")
+                .from("favourites").fetchSize(1).buildStream(rs -> rs.getString(1))) {
+            Assertions.assertEquals(1, pool.getActiveCount());
+            Assertions.assertEquals(List.of("Home", "Work"), names.sorted().toList());
+        }
+        Assertions.assertEquals(0, pool.getActiveCount());
+    }
+
+    /**
+     * Tests forEach passes every row to the consumer.
+     */
+    @Test
+    void testForEach() {
+        // Reset to make sure nothing in database
+        DatabaseManager.getInstance().resetDb();
+
+        Favourite favourite = new Favourite("40 Little Oaks Drive",
+                "University of Canterbury", 143.657, 34.534,
+                141.657, 33.534, "", "bike", "Home");
+        builder.insert("favourites").buildSetter(List.of(favourite));
+
+        List<String> names = new ArrayList<>();
+        SqliteQueryBuilder.create().select("route_name").from("favourites")
+                .forEach(rs -> rs.getString(1), names::add);
+        Assertions.assertEquals(List.of("Home"), names);
+    }
+
+    /**
+     * Tests upserting keeps each crash's own id and only writes rows that changed.
+     */
+    @Test
+    void testUpsert() {
+        // Reset to make sure nothing in database
+        DatabaseManager.getInstance().resetDb();
+
+        Crash crash = upsertTestCrash(50, -43.53);
+        Assertions.assertEquals(1, SqliteQueryBuilder.create().upsert("crashes")
+                .buildSetter(List.of(crash)));
+        Assertions.assertEquals(0, SqliteQueryBuilder.create().upsert("crashes")
+                .buildSetter(List.of(crash)));
+
+        Crash changed = upsertTestCrash(60, -43.60);
+        Assertions.assertEquals(1, SqliteQueryBuilder.create().upsert("crashes")
+                .buildSetter(List.of(changed)));
+
+        List<Integer> speedLimits = SqliteQueryBuilder.create().select("speed_limit")
+                .from("crashes").where("object_id = ?", 4242).buildGetter(rs -> rs.getInt(1));
+        Assertions.assertEquals(List.of(60), speedLimits);
+        List<Double> rtreeLatitudes = SqliteQueryBuilder.create().select("minY")
+                .from("rtree_index").where("id = ?", 4242).buildGetter(rs -> rs.getDouble(1));
+        Assertions.assertEquals(1, rtreeLatitudes.size());
+        Assertions.assertEquals(-43.60, rtreeLatitudes.get(0), 1e-4);
+    }
+
+    private static Crash upsertTestCrash(int speedLimit, double latitude) {
+        return new Crash.Builder(4242)
+                .speedLimit(speedLimit)
+                .year(2019)
+                .location1("MAIN ROAD")
+                .location2("HIGH STREET")
+                .severity("Serious Crash")
+                .region("Canterbury Region")
+                .weather("Fine")
+                .latitude(latitude)
+                .longitude(172.63)
+                .build();
+    }
+
     /**
      * Tests getQuery function.
      */